@@ -0,0 +1,138 @@
+package edu.sustech.xiangqi.bench;
+
+import edu.sustech.xiangqi.model.AbstractPiece;
+import edu.sustech.xiangqi.model.ChessBoardModel;
+import edu.sustech.xiangqi.model.MoveGenerator;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+
+//hot paths of ChessBoardModel on an opening, a middlegame and a sparse endgame position
+//allocation rates come from the gc profiler (on by default in the jmh profile, see pom.xml)
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ModelBenchmark {
+    private static final String OPENING = "rnbakabnr/9/1c5c1/p1p1p1p1p/9/9/P1P1P1P1P/1C5C1/9/RNBAKABNR w";
+    private static final String MIDDLEGAME = "r1ba1a3/4kn3/2n1b4/pNp1p1p1p/4c4/6P2/P1P2R2P/1CcC5/9/2BAKAB2 w";
+    private static final String ENDGAME = "3ak4/9/9/9/9/9/9/9/4A4/3K1R3 w";
+
+    @Param({"opening", "middlegame", "endgame"})
+    public String position;
+
+    private ChessBoardModel model;
+    private String fen;
+    private File saveFile;
+    private int fromRow, fromCol, toRow, toCol;//first legal move of the position
+    private int probeRow, probeCol;
+    private PrintStream realOut;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        realOut = System.out;
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));//save/load/movePiece log every call
+        fen = position.equals("opening") ? OPENING : position.equals("middlegame") ? MIDDLEGAME : ENDGAME;
+        model = ChessBoardModel.fromFen(fen);
+
+        int[] moves = new int[MoveGenerator.MAX_MOVES];
+        MoveGenerator.generateLegal(model, model.isRedTurn(), moves, 0);
+        int from = ChessBoardModel.moveFrom(moves[0]), to = ChessBoardModel.moveTo(moves[0]);
+        fromRow = from / ChessBoardModel.getCols();
+        fromCol = from % ChessBoardModel.getCols();
+        toRow = to / ChessBoardModel.getCols();
+        toCol = to % ChessBoardModel.getCols();
+
+        AbstractPiece g = model.findGeneral(model.isRedTurn());
+        probeRow = g.getRow();
+        probeCol = g.getCol();
+
+        saveFile = File.createTempFile("xiangqi-bench", ".save");
+        saveFile.deleteOnExit();
+        model.saveGame(saveFile.getPath());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        System.setOut(realOut);
+    }
+
+    //movePiece / loadGame change the board, so they get their own copy per call (kept out of the other benchmarks)
+    @State(Scope.Thread)
+    public static class FreshModel {
+        ChessBoardModel model;
+
+        @Setup(Level.Invocation)
+        public void copy(ModelBenchmark bench) {
+            model = new ChessBoardModel(bench.model);
+        }
+    }
+
+    @Benchmark
+    public AbstractPiece getPieceAt() {
+        return model.getPieceAt(probeRow, probeCol);
+    }
+
+    @Benchmark
+    public boolean generalInCheck() {
+        return model.generalInCheck(model.isRedTurn());
+    }
+
+    @Benchmark
+    public boolean moveLeavesOwnGeneralInCheck() {
+        return model.moveLeavesOwnGeneralInCheck(fromRow, fromCol, toRow, toCol);
+    }
+
+    @Benchmark
+    public boolean causesCheckmate() {
+        return model.causesCheckmate(fromRow, fromCol, toRow, toCol);
+    }
+
+    @Benchmark
+    public boolean hasLegalMove() {
+        return model.hasLegalMove(model.isRedTurn());
+    }
+
+    @Benchmark
+    public String checkEndgame() {
+        return model.checkEndgame();
+    }
+
+    @Benchmark
+    public String serializePosition() {
+        return model.serializePosition();
+    }
+
+    @Benchmark
+    public String toFen() {
+        return model.toFen();
+    }
+
+    @Benchmark
+    public ChessBoardModel fromFen() {
+        return ChessBoardModel.fromFen(fen);
+    }
+
+    @Benchmark
+    public void saveGame() {
+        model.saveGame(saveFile.getPath());
+    }
+
+    @Benchmark
+    public void loadGame(FreshModel fresh, Blackhole bh) {
+        fresh.model.loadGame(saveFile.getPath());
+        bh.consume(fresh.model.getPieces().size());
+    }
+
+    @Benchmark
+    public boolean movePiece(FreshModel fresh) {
+        return fresh.model.tryMove(fromRow, fromCol, toRow, toCol);
+    }
+}
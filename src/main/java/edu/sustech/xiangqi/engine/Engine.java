@@ -0,0 +1,178 @@
+package edu.sustech.xiangqi.engine;
+
+import edu.sustech.xiangqi.model.ChessBoardModel;
+import edu.sustech.xiangqi.model.MoveGenerator;
+import edu.sustech.xiangqi.model.Tablebase;
+
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+//computer opponent: runs searches on its own background thread so the Swing EDT never blocks
+//callbacks are called on the engine thread, UI code has to hop back with SwingUtilities.invokeLater
+//pondering: after its own move the engine searches the expected reply on a virtual thread while the opponent thinks,
+//a think() on exactly that position takes the running search over (time limit counted from then), anything else
+//cancels it; the transposition table is shared, so even a cancelled ponder search leaves useful entries behind
+public class Engine {
+    public static final int DEFAULT_HASH_MB = 16;
+
+    private final ExecutorService executor = Executors.newSingleThreadExecutor(r -> {
+        Thread t = new Thread(r, "xiangqi-engine");
+        t.setDaemon(true);//never keeps the app alive on exit
+        return t;
+    });
+    private volatile AtomicBoolean stopFlag = new AtomicBoolean();//one flag per search, so stop() only hits the current one
+    private TranspositionTable tt = new TranspositionTable(DEFAULT_HASH_MB);//kept between moves, that's most of its value
+    private int threads = 1;//search threads (lazy SMP when > 1)
+    private volatile LazySmpSearch current;//search of the last think()
+    private volatile OpeningBook book;//null = no book
+    private final Random bookRandom = new Random();
+    private Ponder ponder;//running ponder search, null if none; guarded by this
+
+    //one ponder search: the position it searches is the current one plus the expected reply
+    private static class Ponder {
+        final LazySmpSearch search;
+        final AtomicBoolean flag;
+        final CompletableFuture<SearchResult> result = new CompletableFuture<>();
+        final int expectedMove;
+        final long hash;
+
+        Ponder(LazySmpSearch search, AtomicBoolean flag, int expectedMove, long hash) {
+            this.search = search;
+            this.flag = flag;
+            this.expectedMove = expectedMove;
+            this.hash = hash;
+        }
+    }
+
+    //start thinking about the position (copied right away on the calling thread)
+    //the future completes with the best move, onIteration (may be null) sees every finished depth
+    //a book move (weighted random) is returned right away, without searching, so is the endgame table move when the
+    //position is in the tables (Tablebase.getDefault())
+    //if a ponder search on this very position is running and only a time limit is asked for, that search goes on
+    //with the time limit from now and its future is returned (onIteration is not attached to it then)
+    public CompletableFuture<SearchResult> think(ChessBoardModel position, SearchLimits limits, Consumer<SearchResult> onIteration) {
+        synchronized (this) {
+            Ponder p = ponder;
+            if (p != null && p.hash == position.getHash() && limits.getNodes() == 0
+                    && limits.getDepth() == SearchLimits.MAX_DEPTH && limits.getTimeMillis() > 0) {
+                ponder = null;
+                p.search.setTimeLimit(limits.getSoftTimeMillis(), limits.getTimeMillis());//ponder hit
+                stopFlag = p.flag;
+                current = p.search;
+                return p.result;
+            }
+        }
+        stop();//also cancels a ponder search on some other position
+        OpeningBook b = book;
+        int bookMove = b != null ? b.pick(position, bookRandom) : 0;
+        if (bookMove != 0) {
+            return CompletableFuture.completedFuture(new SearchResult(bookMove, 0, 0, new int[]{bookMove}, 0, 0));
+        }
+        SearchResult tablebaseResult = probeTablebase(position);
+        if (tablebaseResult != null) {
+            return CompletableFuture.completedFuture(tablebaseResult);
+        }
+        AtomicBoolean flag = new AtomicBoolean();
+        stopFlag = flag;
+        LazySmpSearch search = new LazySmpSearch(position, limits, flag, tt, threads);
+        search.setOnIteration(onIteration);
+        current = search;
+        return CompletableFuture.supplyAsync(search::run, executor);
+    }
+
+    //put a time limit (counted from now) on the search of the last think(), e.g. an infinite one on ponderhit
+    public void setTimeLimit(long softMillis, long hardMillis) {
+        LazySmpSearch search = current;
+        if (search != null) {
+            search.setTimeLimit(softMillis, hardMillis);
+        }
+    }
+
+    //start searching the position after expectedMove (the reply the last search predicted) until think() or
+    //opponentMoved() decides what happens with it; does nothing if the move isn't legal in the position
+    public synchronized void ponder(ChessBoardModel position, int expectedMove) {
+        stopPondering();
+        if (executor.isShutdown() || !MoveGenerator.isLegal(position, expectedMove)) {
+            return;
+        }
+        ChessBoardModel next = new ChessBoardModel(position);
+        next.makeMove(expectedMove);
+        AtomicBoolean flag = new AtomicBoolean();
+        Ponder p = new Ponder(new LazySmpSearch(next, SearchLimits.infinite(), flag, tt, threads), flag, expectedMove, next.getHash());
+        ponder = p;
+        Thread.ofVirtual().name("xiangqi-ponder").start(() -> {
+            try {
+                p.result.complete(p.search.run());
+            } catch (RuntimeException e) {
+                p.result.completeExceptionally(e);
+            }
+        });
+    }
+
+    //the opponent just played move: if it wasn't the expected one the ponder search is cancelled right away
+    //(only raises a flag, safe to call from the EDT); on a hit it keeps running until think() takes it over
+    public synchronized void opponentMoved(int move) {
+        if (ponder != null && ponder.expectedMove != move) {
+            stopPondering();
+        }
+    }
+
+    private void stopPondering() {
+        if (ponder != null) {
+            ponder.flag.set(true);
+            ponder = null;
+        }
+    }
+
+    //table move with its exact score (mate distance as the search would report it), null if not in the tables
+    private static SearchResult probeTablebase(ChessBoardModel position) {
+        Tablebase tb = Tablebase.getDefault();
+        if (tb == null) {
+            return null;
+        }
+        int code = tb.probe(position);
+        int move = tb.bestMove(position);
+        if (move == 0) {
+            return null;
+        }
+        int score = Tablebase.isWin(code) ? Search.MATE - Tablebase.distance(code)
+                : Tablebase.isLoss(code) ? -Search.MATE + Tablebase.distance(code) : 0;
+        return new SearchResult(move, score, 0, new int[]{move}, 0, 0);
+    }
+
+    //book to play from while the position is in it (null = always search)
+    public void setBook(OpeningBook book) {
+        this.book = book;
+    }
+
+    //resize (and clear) the transposition table, takes effect from the next search
+    public void setHashSize(int megabytes) {
+        tt = new TranspositionTable(megabytes);
+    }
+
+    //number of search threads, takes effect from the next search
+    public void setThreads(int threads) {
+        this.threads = Math.max(1, threads);
+    }
+
+    //ask the running search to return its best move so far
+    public void stop() {
+        synchronized (this) {
+            stopPondering();
+        }
+        stopFlag.set(true);
+    }
+
+    public void shutdown() {
+        stop();
+        executor.shutdownNow();
+    }
+
+    public boolean isShutdown() {
+        return executor.isShutdown();
+    }
+}
@@ -0,0 +1,54 @@
+package edu.sustech.xiangqi.engine;
+
+import edu.sustech.xiangqi.model.AbstractPiece;
+import edu.sustech.xiangqi.model.AttackTables;
+import edu.sustech.xiangqi.model.ChessBoardModel;
+import edu.sustech.xiangqi.model.PieceSquareTables;
+
+//static evaluation, score is from the side to move's point of view
+//material + piece-square values come ready from the model (kept up to date on make / unmake), here they are only
+//blended: full middlegame value with every chariot, horse and cannon on the board, endgame value when they are gone
+//endgame knowledge and soldier structure come from two small caches, so each costs one lookup per evaluation
+public class Evaluator {
+    //indexed by PieceType id, general has no material value (losing it is mate anyway)
+    //plain piece values for exchange evaluation and move ordering
+    public static final int[] MATERIAL = {0, 200, 200, 400, 900, 450, 100};
+    private static final int MATING_BONUS = 200;//make the winning side head for the mate instead of shuffling
+    private static final int MATING_MOBILITY = 25;//per square the lone general can still step to
+
+    private final MaterialTable materials = new MaterialTable();
+    private final SoldierTable soldiers = new SoldierTable();
+
+    public int evaluate(ChessBoardModel model) {
+        int soldierTerms = soldiers.probe(model);
+        int mg = model.getMidgameScore() + SoldierTable.midgame(soldierTerms);
+        int eg = model.getEndgameScore() + SoldierTable.endgame(soldierTerms);
+        int phase = Math.min(model.getPhase(), PieceSquareTables.MAX_PHASE);
+        int score = (mg * phase + eg * (PieceSquareTables.MAX_PHASE - phase)) / PieceSquareTables.MAX_PHASE;//red minus black
+
+        int material = materials.probe(model.getMaterialKey());
+        if (MaterialTable.special(material) == MaterialTable.SPECIAL_MATING) {
+            boolean strongRed = MaterialTable.specialRed(material);
+            int bonus = matingBonus(model, !strongRed);
+            score += strongRed ? bonus : -bonus;
+        }
+        int scale = score > 0 ? MaterialTable.redScale(material) : MaterialTable.blackScale(material);
+        score = score * scale / MaterialTable.SCALE_NORMAL;
+        return model.isRedTurn() ? score : -score;
+    }
+
+    //the fewer squares the lone general can step to, the closer the mate
+    private static int matingBonus(ChessBoardModel model, boolean weakRed) {
+        AbstractPiece general = model.findGeneral(weakRed);
+        if (general == null) {
+            return MATING_BONUS;
+        }
+        int free = 0;
+        for (int sq : AttackTables.GENERAL_TARGETS[weakRed ? 0 : 1][AttackTables.square(general.getRow(), general.getCol())]) {
+            if (model.getPieceAt(sq / 9, sq % 9) == null) {
+                free++;
+            }
+        }
+        return MATING_BONUS - MATING_MOBILITY * free;
+    }
+}
@@ -0,0 +1,63 @@
+package edu.sustech.xiangqi.engine;
+
+import edu.sustech.xiangqi.model.ChessBoardModel;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+//lazy SMP: helper threads search the same root position (at staggered depths) and only share the transposition table
+//their results reach the main thread through the table, the main thread's search decides and reports the move
+public class LazySmpSearch {
+    private final Search main;
+    private final Search[] helpers;
+    private final AtomicBoolean helperStop = new AtomicBoolean();
+    private Consumer<SearchResult> onIteration;
+
+    public LazySmpSearch(ChessBoardModel position, SearchLimits limits, AtomicBoolean stopFlag, TranspositionTable tt, int threads) {
+        main = new Search(position, limits, stopFlag, tt);
+        helpers = new Search[Math.max(0, threads - 1)];
+        for (int i = 0; i < helpers.length; i++) {
+            //helpers have no limits of their own, they run until the main search is done
+            helpers[i] = new Search(position, SearchLimits.infinite(), helperStop, tt);
+            helpers[i].setHelperId(i + 1);
+        }
+    }
+
+    public void setOnIteration(Consumer<SearchResult> onIteration) {
+        this.onIteration = onIteration;
+    }
+
+    //the helpers follow the main thread, so only its deadline matters
+    public void setTimeLimit(long softMillis, long hardMillis) {
+        main.setTimeLimit(softMillis, hardMillis);
+    }
+
+    public SearchResult run() {
+        main.setOnIteration(onIteration);
+        if (helpers.length == 0) {
+            return main.run();
+        }
+        Thread[] threads = new Thread[helpers.length];
+        for (int i = 0; i < helpers.length; i++) {
+            Search helper = helpers[i];
+            threads[i] = new Thread(helper::run, "xiangqi-smp-" + (i + 1));
+            threads[i].setDaemon(true);
+            threads[i].start();
+        }
+
+        SearchResult result = main.run();
+
+        helperStop.set(true);
+        long nodes = result.getNodes();
+        for (int i = 0; i < threads.length; i++) {
+            try {
+                threads[i].join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            nodes += helpers[i].getNodes();
+        }
+        //same move / score / pv as the main thread, nodes counted over all threads
+        return new SearchResult(result.getBestMove(), result.getScore(), result.getDepth(), result.getPv(), nodes, result.getTimeMillis());
+    }
+}
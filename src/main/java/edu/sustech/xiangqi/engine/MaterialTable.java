@@ -0,0 +1,102 @@
+package edu.sustech.xiangqi.engine;
+
+import edu.sustech.xiangqi.model.ChessBoardModel;
+import edu.sustech.xiangqi.model.PieceType;
+
+//material signature cache: what the piece counts alone say about a position, keyed by ChessBoardModel.getMaterialKey
+//an entry holds a scale factor per side (out of 64) that shrinks that side's advantage where its material can't or
+//usually doesn't win, and which special evaluator (if any) the ending needs
+//small, direct mapped and per search thread: in a search the material changes rarely, so nearly every probe hits
+public class MaterialTable {
+    public static final int SCALE_NORMAL = 64;
+    public static final int SPECIAL_NONE = 0;
+    public static final int SPECIAL_MATING = 1;//one side against a general with at most one defender and no attackers
+
+    private static final int SIZE = 512;//power of two
+    private static final int VALID = 1 << 24;
+
+    private final long[] keys = new long[SIZE];
+    private final int[] entries = new int[SIZE];
+
+    //packed entry, read it with redScale / blackScale / special / specialRed
+    public int probe(long materialKey) {
+        int slot = (int) ((materialKey * 0x9E3779B97F4A7C15L) >>> 55) & (SIZE - 1);
+        if (keys[slot] == materialKey && entries[slot] != 0) {
+            return entries[slot];
+        }
+        int entry = compute(materialKey);
+        keys[slot] = materialKey;
+        entries[slot] = entry;
+        return entry;
+    }
+
+    public static int redScale(int entry) {
+        return entry & 0xFF;
+    }
+
+    public static int blackScale(int entry) {
+        return entry >>> 8 & 0xFF;
+    }
+
+    public static int special(int entry) {
+        return entry >>> 16 & 0x7F;
+    }
+
+    //side the special evaluator works for
+    public static boolean specialRed(int entry) {
+        return (entry & 1 << 23) != 0;
+    }
+
+    private static int compute(long key) {
+        int entry = VALID | scaleFor(key, true) | scaleFor(key, false) << 8;
+        for (int s = 0; s < 2; s++) {
+            boolean strong = s == 0;
+            if (attackers(key, strong) > 0 && scaleFor(key, strong) == SCALE_NORMAL
+                    && attackers(key, !strong) == 0 && defenders(key, !strong) <= 1) {
+                entry |= SPECIAL_MATING << 16 | (strong ? 1 << 23 : 0);
+            }
+        }
+        return entry;
+    }
+
+    //how much of its advantage the side "strong" can turn into a win with this material
+    private static int scaleFor(long key, boolean strong) {
+        int chariots = count(key, PieceType.CHARIOT, strong);
+        int horses = count(key, PieceType.HORSE, strong);
+        int cannons = count(key, PieceType.CANNON, strong);
+        int soldiers = count(key, PieceType.SOLDIER, strong);
+        if (chariots + horses + cannons + soldiers == 0) {
+            return 0;//advisors and elephants can't leave their half, nothing can give mate
+        }
+        if (chariots + horses + soldiers == 0 && cannons == 1 && count(key, PieceType.ADVISOR, strong) == 0) {
+            return 0;//a lone cannon has no screen to mate with
+        }
+        if (attackers(key, !strong) > 0) {
+            return SCALE_NORMAL;//the other side still plays, no book ending
+        }
+        int defenders = defenders(key, !strong);
+        if (chariots == 1 && horses + cannons + soldiers == 0 && defenders == 4) {
+            return 8;//chariot against both advisors and both elephants: usually a draw
+        }
+        if (horses == 1 && chariots + cannons + soldiers == 0 && defenders >= 2) {
+            return 4;//a lone horse can't break two defenders
+        }
+        if (soldiers == 1 && chariots + horses + cannons == 0 && defenders >= 1) {
+            return 8;//a lone soldier is held by any defender
+        }
+        return SCALE_NORMAL;
+    }
+
+    private static int attackers(long key, boolean red) {
+        return count(key, PieceType.CHARIOT, red) + count(key, PieceType.HORSE, red)
+                + count(key, PieceType.CANNON, red) + count(key, PieceType.SOLDIER, red);
+    }
+
+    private static int defenders(long key, boolean red) {
+        return count(key, PieceType.ADVISOR, red) + count(key, PieceType.ELEPHANT, red);
+    }
+
+    private static int count(long key, int type, boolean red) {
+        return ChessBoardModel.materialCount(key, type, red);
+    }
+}
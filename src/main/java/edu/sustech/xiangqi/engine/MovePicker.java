@@ -0,0 +1,165 @@
+package edu.sustech.xiangqi.engine;
+
+import edu.sustech.xiangqi.model.AbstractPiece;
+import edu.sustech.xiangqi.model.ChessBoardModel;
+import edu.sustech.xiangqi.model.MoveGenerator;
+import edu.sustech.xiangqi.model.PieceType;
+
+//hands out the moves of one node best-guess first, in stages:
+//hash move, captures (most valuable victim, least valuable attacker), 2 killers, quiet moves by history score
+//the hash move is tried before anything is generated, so a hash cutoff costs no move generation at all
+//one picker per ply is made up front by the search and reused (init) at every node, nothing is allocated per node
+//moves are pseudo legal, the search still has to check the own general after making them
+public class MovePicker {
+    private static final int STAGE_TT = 0;
+    private static final int STAGE_GENERATE = 1;
+    private static final int STAGE_CAPTURES = 2;
+    private static final int STAGE_KILLER_1 = 3;
+    private static final int STAGE_KILLER_2 = 4;
+    private static final int STAGE_QUIETS = 5;
+    private static final int STAGE_UNORDERED = 6;
+    private static final int STAGE_DONE = 7;
+
+    private final int[] moves = new int[MoveGenerator.MAX_MOVES];
+    private final int[] scores = new int[MoveGenerator.MAX_MOVES];
+    private final int[][] history;//shared with the search: [PieceType.index][target square]
+
+    private ChessBoardModel board;
+    private boolean side;
+    private int ttMove;
+    private int killer1;
+    private int killer2;
+    private int stage;
+    private int index;
+    private int captureEnd;//moves[0, captureEnd) are captures, the quiet moves follow up to count
+    private int count;
+
+    public MovePicker(int[][] history) {
+        this.history = history;
+    }
+
+    //start over for a new node; ordered = false hands out the moves in generation order (for comparison runs)
+    public void init(ChessBoardModel board, int ttMove, int killer1, int killer2, boolean ordered) {
+        this.board = board;
+        this.side = board.isRedTurn();
+        this.ttMove = ordered && MoveGenerator.isPseudoLegal(board, ttMove, side) ? ttMove : 0;
+        this.killer1 = killer1;
+        this.killer2 = killer2;
+        this.stage = ordered ? STAGE_TT : STAGE_UNORDERED;
+        this.index = 0;
+        this.count = 0;
+        if (!ordered) {
+            count = MoveGenerator.generate(board, side, moves, 0);
+        }
+    }
+
+    //next move to try, 0 when there are none left
+    public int next() {
+        switch (stage) {
+            case STAGE_TT:
+                stage = STAGE_GENERATE;
+                if (ttMove != 0) {
+                    return ttMove;
+                }
+                //fall through
+            case STAGE_GENERATE:
+                generate();
+                stage = STAGE_CAPTURES;
+                //fall through
+            case STAGE_CAPTURES:
+                while (index < captureEnd) {
+                    int move = pickBest(captureEnd);
+                    if (move != ttMove) {
+                        return move;
+                    }
+                }
+                stage = STAGE_KILLER_1;
+                //fall through
+            case STAGE_KILLER_1:
+                stage = STAGE_KILLER_2;
+                if (isQuietCandidate(killer1)) {
+                    return killer1;
+                }
+                //fall through
+            case STAGE_KILLER_2:
+                stage = STAGE_QUIETS;
+                scoreQuiets();//before the killer goes out, the next call starts on the quiets right away
+                if (killer2 != killer1 && isQuietCandidate(killer2)) {
+                    return killer2;
+                }
+                //fall through
+            case STAGE_QUIETS:
+                while (index < count) {
+                    int move = pickBest(count);
+                    if (move != ttMove && move != killer1 && move != killer2) {
+                        return move;
+                    }
+                }
+                stage = STAGE_DONE;
+                return 0;
+            case STAGE_UNORDERED:
+                if (index < count) {
+                    return moves[index++];
+                }
+                stage = STAGE_DONE;
+                return 0;
+            default:
+                return 0;
+        }
+    }
+
+    private void generate() {
+        int end = MoveGenerator.generate(board, side, moves, 0);
+        //captures to the front, scored most valuable victim first and, among those, least valuable attacker first
+        int captures = 0;
+        for (int i = 0; i < end; i++) {
+            int move = moves[i];
+            int to = ChessBoardModel.moveTo(move);
+            AbstractPiece victim = board.getPieceAt(to / 9, to % 9);
+            if (victim != null) {
+                int from = ChessBoardModel.moveFrom(move);
+                AbstractPiece attacker = board.getPieceAt(from / 9, from % 9);
+                moves[i] = moves[captures];
+                moves[captures] = move;
+                scores[captures] = Evaluator.MATERIAL[victim.getType()] * 16 - Evaluator.MATERIAL[attacker.getType()] / 50;
+                captures++;
+            }
+        }
+        captureEnd = captures;
+        count = end;
+    }
+
+    private void scoreQuiets() {
+        for (int i = captureEnd; i < count; i++) {
+            int from = ChessBoardModel.moveFrom(moves[i]);
+            AbstractPiece p = board.getPieceAt(from / 9, from % 9);
+            scores[i] = history[PieceType.index(p.getType(), p.isRed())][ChessBoardModel.moveTo(moves[i])];
+        }
+    }
+
+    //selection sort step over moves[index, end): the best one is swapped to index and handed out
+    private int pickBest(int end) {
+        int best = index;
+        for (int i = index + 1; i < end; i++) {
+            if (scores[i] > scores[best]) {
+                best = i;
+            }
+        }
+        int move = moves[best];
+        moves[best] = moves[index];
+        scores[best] = scores[index];
+        moves[index] = move;
+        scores[index] = 0;
+        index++;
+        return move;
+    }
+
+    //killers come from sibling nodes, so they must still be possible here and not be a capture (those went first)
+    private boolean isQuietCandidate(int move) {
+        if (move == 0 || move == ttMove || !MoveGenerator.isPseudoLegal(board, move, side)) {
+            return false;
+        }
+        int to = ChessBoardModel.moveTo(move);
+        return board.getPieceAt(to / 9, to % 9) == null;
+    }
+}
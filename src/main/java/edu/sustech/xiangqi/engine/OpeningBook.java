@@ -0,0 +1,161 @@
+package edu.sustech.xiangqi.engine;
+
+import edu.sustech.xiangqi.model.AbstractPiece;
+import edu.sustech.xiangqi.model.ChessBoardModel;
+import edu.sustech.xiangqi.model.MoveGenerator;
+import edu.sustech.xiangqi.model.Zobrist;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+//opening book file written by tools.BookBuilder, memory mapped and binary searched, never read onto the heap
+//layout: 16 byte header (magic, version, record count, unused), then fixed size records sorted by key,
+//within a key by weight (highest first): key (long), move (short), weight (unsigned short), wins, draws, losses (int)
+//results count from the point of view of the side to move in the position
+//a position and its left-right mirror image share their records: the key is the smaller of the two Zobrist keys
+//and the move is stored as played in that position; in a symmetric position (e.g. the start) a move and its mirror
+//image are one record as well, stored as the smaller of the two
+public class OpeningBook {
+    public static final int MAGIC = 0x58514246;//"XQBF"
+    public static final int VERSION = 1;
+    public static final int HEADER_BYTES = 16;
+    public static final int RECORD_BYTES = 24;
+
+    private final MappedByteBuffer buffer;
+    private final int count;
+
+    //one book move for the position it was looked up in
+    public static class Entry {
+        public final int move;
+        public final int weight;
+        public final int wins;
+        public final int draws;
+        public final int losses;
+
+        public Entry(int move, int weight, int wins, int draws, int losses) {
+            this.move = move;
+            this.weight = weight;
+            this.wins = wins;
+            this.draws = draws;
+            this.losses = losses;
+        }
+
+        public int games() {
+            return wins + draws + losses;
+        }
+    }
+
+    private OpeningBook(MappedByteBuffer buffer) throws IOException {
+        if (buffer.capacity() < HEADER_BYTES || buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            throw new IOException("not an opening book (version " + VERSION + ")");
+        }
+        this.buffer = buffer;
+        this.count = buffer.getInt(8);
+        if ((long) HEADER_BYTES + (long) count * RECORD_BYTES > buffer.capacity()) {
+            throw new IOException("opening book is truncated");
+        }
+    }
+
+    //the mapping stays valid after the channel is closed, the file is paged in by the OS as lookups touch it
+    public static OpeningBook open(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            return new OpeningBook(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    public int size() {
+        return count;
+    }
+
+    //book moves for the position, best weight first; empty if the position isn't in the book
+    //moves are checked against the board, so a (very unlikely) key collision can't hand out an illegal move
+    public List<Entry> lookup(ChessBoardModel position) {
+        List<Entry> result = new ArrayList<>();
+        long key = position.getHash();
+        long mirrorKey = mirroredHash(position);
+        boolean mirrored = mirrorKey < key;
+        boolean symmetric = mirrorKey == key;
+        for (int i = firstRecord(Math.min(key, mirrorKey)); i < count && keyAt(i) == Math.min(key, mirrorKey); i++) {
+            int at = HEADER_BYTES + i * RECORD_BYTES;
+            int move = buffer.getShort(at + 8);
+            int weight = Short.toUnsignedInt(buffer.getShort(at + 10));
+            int wins = buffer.getInt(at + 12), draws = buffer.getInt(at + 16), losses = buffer.getInt(at + 20);
+            if (mirrored) {
+                move = mirrorMove(move);
+            }
+            if (symmetric && mirrorMove(move) != move) {
+                //one record for a move pair, each half of it gets half the weight
+                addIfLegal(result, position, new Entry(move, (weight + 1) / 2, wins, draws, losses));
+                addIfLegal(result, position, new Entry(mirrorMove(move), (weight + 1) / 2, wins, draws, losses));
+            } else {
+                addIfLegal(result, position, new Entry(move, weight, wins, draws, losses));
+            }
+        }
+        return result;
+    }
+
+    //random book move, chosen in proportion to the weights; 0 if there is none
+    public int pick(ChessBoardModel position, Random random) {
+        List<Entry> entries = lookup(position);
+        int total = 0;
+        for (Entry e : entries) {
+            total += e.weight;
+        }
+        if (total == 0) {
+            return 0;
+        }
+        int r = random.nextInt(total);
+        for (Entry e : entries) {
+            r -= e.weight;
+            if (r < 0) {
+                return e.move;
+            }
+        }
+        return 0;
+    }
+
+    //index of the first record with the key (or where it would be)
+    private int firstRecord(long key) {
+        int lo = 0, hi = count;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (keyAt(mid) < key) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    private long keyAt(int index) {
+        return buffer.getLong(HEADER_BYTES + index * RECORD_BYTES);
+    }
+
+    private static void addIfLegal(List<Entry> result, ChessBoardModel position, Entry entry) {
+        if (MoveGenerator.isLegal(position, entry.move)) {
+            result.add(entry);
+        }
+    }
+
+    //Zobrist key the position would have with every piece moved to the mirror file
+    public static long mirroredHash(ChessBoardModel position) {
+        long key = position.isRedTurn() ? 0L : Zobrist.BLACK_TO_MOVE;
+        for (AbstractPiece p : position.getPieces()) {
+            key ^= Zobrist.piece(p, p.getRow(), ChessBoardModel.getCols() - 1 - p.getCol());
+        }
+        return key;
+    }
+
+    public static int mirrorMove(int move) {
+        int cols = ChessBoardModel.getCols();
+        int from = ChessBoardModel.moveFrom(move), to = ChessBoardModel.moveTo(move);
+        return ChessBoardModel.encodeMove(from / cols, cols - 1 - from % cols, to / cols, cols - 1 - to % cols);
+    }
+}
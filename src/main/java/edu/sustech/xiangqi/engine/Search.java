@@ -0,0 +1,529 @@
+package edu.sustech.xiangqi.engine;
+
+import edu.sustech.xiangqi.model.AbstractPiece;
+import edu.sustech.xiangqi.model.ChessBoardModel;
+import edu.sustech.xiangqi.model.MoveGenerator;
+import edu.sustech.xiangqi.model.PinInfo;
+import edu.sustech.xiangqi.model.PieceType;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+//iterative deepening principal variation (PVS) alpha-beta over a private copy of a ChessBoardModel
+//stops cleanly on depth / node / time limits or when the shared stop flag is raised, and then
+//returns the last completed iteration (or the best root move found so far if not even depth 1 finished)
+//leaves go through a capture-only quiescence search so pending trades don't distort the evaluation
+//selective parts (null move, late move reductions, futility pruning, check extensions) can each be switched off,
+//e.g. to compare node counts (tools.SearchBench) or when a perpetual-check line is misjudged
+public class Search {
+    public static final int INFINITY = 32000;
+    public static final int MATE = 30000;//mate in n plies scores MATE - n
+    private static final int MAX_PLY = SearchLimits.MAX_DEPTH + 16;
+    private static final int CHECK_EVERY = 1024;//nodes between limit checks
+    private static final int HISTORY_MAX = 1 << 20;//all history scores are halved once one gets this big
+    private static final int[] FUTILITY_MARGIN = {0, 250, 500};//by remaining depth, frontier (1) and pre-frontier (2)
+    public static final double LMR_BASE = 0.75;//default reduction = base + ln(depth) * ln(move number) / divisor
+    public static final double LMR_DIVISOR = 2.25;
+
+    private final ChessBoardModel board;
+    private final SearchLimits limits;
+    private final AtomicBoolean stopFlag;
+    private final TranspositionTable tt;
+    private final Evaluator evaluator = new Evaluator();
+    private final StaticExchange exchange = new StaticExchange();
+    private Consumer<SearchResult> onIteration;//called after every finished depth (info output)
+    private int depthOffset = 0;//lazy SMP helpers search some iterations one ply deeper than the main thread
+    private boolean moveOrdering = true;//off: plain generation order, only there to measure what ordering buys
+    private boolean nullMove = true;
+    private boolean lateMoveReductions = true;
+    private boolean futilityPruning = true;
+    private boolean checkExtensions = true;
+    private final int[][] lmrTable = new int[64][64];//[depth][move number], in plies
+
+    private final int[] moveStack = new int[MAX_PLY * MoveGenerator.MAX_MOVES];
+    private final int[] scoreStack = new int[MAX_PLY * MoveGenerator.MAX_MOVES];//capture order keys, parallel to moveStack
+    private final int[][] pvTable = new int[MAX_PLY + 1][MAX_PLY + 1];
+    private final int[] pvLength = new int[MAX_PLY + 1];
+    private final long[] pathHashes = new long[MAX_PLY + 1];
+    private final long[] gameHashes;//positions of the game before the root back to the last capture, oldest first
+    private final MovePicker[] pickers = new MovePicker[MAX_PLY];
+    private final PinInfo[] pins = new PinInfo[MAX_PLY];//legality without playing the move, see PinInfo
+    private final int[][] killers = new int[MAX_PLY][2];//quiet moves that caused a cutoff at the same ply
+    private final int[][] history = new int[PieceType.COUNT * 2][90];//butterfly history, [PieceType.index][target]
+
+    private long nodes;
+    private long startTime;
+    private volatile long deadline = Long.MAX_VALUE;//can be moved by another thread (ponder hit)
+    private volatile TimeManager timeManager;//soft time limit (clock games), null if there is none
+    private boolean aborted;
+    private int rootBestMove;
+    private int rootDepth;
+
+    public Search(ChessBoardModel position, SearchLimits limits, AtomicBoolean stopFlag) {
+        this(position, limits, stopFlag, new TranspositionTable(16));
+    }
+
+    public Search(ChessBoardModel position, SearchLimits limits, AtomicBoolean stopFlag, TranspositionTable tt) {
+        this.board = new ChessBoardModel(position);//searching never touches the caller's (UI) model
+        this.gameHashes = board.getRecentHashes();
+        this.limits = limits;
+        this.stopFlag = stopFlag;
+        this.tt = tt;
+        for (int ply = 0; ply < MAX_PLY; ply++) {
+            pickers[ply] = new MovePicker(history);
+            pins[ply] = new PinInfo();
+        }
+        setLmrTable(LMR_BASE, LMR_DIVISOR);
+    }
+
+    public void setOnIteration(Consumer<SearchResult> onIteration) {
+        this.onIteration = onIteration;
+    }
+
+    //make this a lazy SMP helper: odd helpers run every iteration one ply deeper so the threads spread over depths
+    public void setHelperId(int id) {
+        this.depthOffset = id & 1;
+    }
+
+    public void setMoveOrdering(boolean moveOrdering) {
+        this.moveOrdering = moveOrdering;
+    }
+
+    public void setNullMove(boolean nullMove) {
+        this.nullMove = nullMove;
+    }
+
+    public void setLateMoveReductions(boolean lateMoveReductions) {
+        this.lateMoveReductions = lateMoveReductions;
+    }
+
+    public void setFutilityPruning(boolean futilityPruning) {
+        this.futilityPruning = futilityPruning;
+    }
+
+    public void setCheckExtensions(boolean checkExtensions) {
+        this.checkExtensions = checkExtensions;
+    }
+
+    //late move reduction for the n-th move at a given depth: base + ln(depth) * ln(n) / divisor plies
+    public void setLmrTable(double base, double divisor) {
+        for (int d = 1; d < lmrTable.length; d++) {
+            for (int n = 1; n < lmrTable[d].length; n++) {
+                lmrTable[d][n] = Math.max(0, (int) (base + Math.log(d) * Math.log(n) / divisor));
+            }
+        }
+    }
+
+    //give a search without time limit (a ponder search) one, counted from now; may be called while it runs
+    //softMillis 0 = no soft limit
+    public void setTimeLimit(long softMillis, long hardMillis) {
+        timeManager = softMillis > 0 ? new TimeManager(softMillis) : null;
+        deadline = System.currentTimeMillis() + hardMillis;
+    }
+
+    public SearchResult run() {
+        startTime = System.currentTimeMillis();
+        if (limits.getTimeMillis() > 0) {
+            deadline = startTime + limits.getTimeMillis();
+        }
+        if (limits.getSoftTimeMillis() > 0) {
+            timeManager = new TimeManager(limits.getSoftTimeMillis());
+        }
+        //taking back the piece that was just captured is usually obvious, the time manager cuts such searches short
+        int recaptureSquare = board.hasLastMove() && board.getHalfmoveClock() == 0
+                ? board.getLastToRow() * 9 + board.getLastToCol() : -1;
+        nodes = 0;
+        aborted = false;
+        tt.newSearch();
+        for (int[] k : killers) {
+            k[0] = 0;
+            k[1] = 0;
+        }
+        ageHistory();
+
+        int[] rootMoves = new int[MoveGenerator.MAX_MOVES];
+        int rootCount = MoveGenerator.generateLegal(board, board.isRedTurn(), rootMoves, 0);
+        if (rootCount == 0) {
+            int score = board.generalInCheck(board.isRedTurn()) ? -MATE : 0;
+            return new SearchResult(0, score, 0, new int[0], 0, 0);
+        }
+
+        SearchResult best = new SearchResult(rootMoves[0], 0, 0, new int[]{rootMoves[0]}, 0, 0);
+        for (int iteration = 1; iteration <= limits.getDepth(); iteration++) {
+            int depth = Math.min(iteration + depthOffset, SearchLimits.MAX_DEPTH);
+            rootBestMove = 0;
+            int score = searchRoot(rootMoves, rootCount, depth);
+            if (aborted) {
+                if (rootBestMove != 0 && best.getDepth() == 0) {
+                    best = new SearchResult(rootBestMove, score, depth, new int[]{rootBestMove}, nodes, elapsed());
+                }
+                break;
+            }
+            int[] pv = new int[pvLength[0]];
+            System.arraycopy(pvTable[0], 0, pv, 0, pv.length);
+            best = new SearchResult(pv[0], score, depth, pv, nodes, elapsed());
+            if (onIteration != null) {
+                onIteration.accept(best);
+            }
+            if (rootCount == 1 || Math.abs(score) >= MATE - depth) {
+                break;//forced move or the mate is already found, deeper won't change the choice
+            }
+            TimeManager tm = timeManager;
+            if (tm != null && !tm.startNextIteration(best.getBestMove(), ChessBoardModel.moveTo(best.getBestMove()) == recaptureSquare)) {
+                break;
+            }
+        }
+        return new SearchResult(best.getBestMove(), best.getScore(), best.getDepth(), best.getPv(), nodes, elapsed());
+    }
+
+    private int searchRoot(int[] rootMoves, int rootCount, int depth) {
+        rootDepth = depth;
+        int alpha = -INFINITY;
+        int beta = INFINITY;
+        pvLength[0] = 0;
+        pathHashes[0] = board.getHash();
+        for (int i = 0; i < rootCount; i++) {
+            int move = rootMoves[i];
+            board.makeMove(move);
+            nodes++;
+            int score;
+            if (i == 0) {
+                score = -alphaBeta(depth - 1, -beta, -alpha, 1, true);
+            } else {
+                score = -alphaBeta(depth - 1, -alpha - 1, -alpha, 1, true);
+                if (score > alpha && !aborted) {
+                    score = -alphaBeta(depth - 1, -beta, -alpha, 1, true);
+                }
+            }
+            board.unmakeMove();
+            if (aborted) {
+                return alpha;
+            }
+            if (score > alpha) {
+                alpha = score;
+                rootBestMove = move;
+                updatePv(0, move);
+                //keep the best move first so the next iteration searches it first
+                System.arraycopy(rootMoves, 0, rootMoves, 1, i);
+                rootMoves[0] = move;
+            }
+        }
+        return alpha;
+    }
+
+    private int alphaBeta(int depth, int alpha, int beta, int ply, boolean allowNull) {
+        pvLength[ply] = 0;
+        if ((nodes & (CHECK_EVERY - 1)) == 0 && limitReached()) {
+            aborted = true;
+            return 0;
+        }
+        pathHashes[ply] = board.getHash();
+        if (isRepetition(ply)) {
+            return 0;
+        }
+        if (depth <= 0 || ply >= MAX_PLY) {
+            return quiesce(alpha, beta, ply);
+        }
+
+        //transposition table: cut off in null-window nodes, otherwise at least search the stored move first
+        long hash = board.getHash();
+        long entry = tt.probe(hash);
+        int ttMove = 0;
+        if (entry != 0) {
+            ttMove = TranspositionTable.move(entry);
+            if (TranspositionTable.depth(entry) >= depth && beta - alpha == 1) {
+                int ttScore = scoreFromTt(TranspositionTable.score(entry), ply);
+                int bound = TranspositionTable.bound(entry);
+                if (bound == TranspositionTable.BOUND_EXACT
+                        || (bound == TranspositionTable.BOUND_LOWER && ttScore >= beta)
+                        || (bound == TranspositionTable.BOUND_UPPER && ttScore <= alpha)) {
+                    return ttScore;
+                }
+            }
+        }
+
+        boolean side = board.isRedTurn();
+        PinInfo pinInfo = pins[ply];
+        pinInfo.compute(board, side);
+        boolean inCheck = pinInfo.isInCheck();
+        boolean pvNode = beta - alpha > 1;
+        int staticEval = inCheck ? -INFINITY : evaluator.evaluate(board);
+
+        //null move: if passing still fails high, a real move will too; not in check, not twice in a row, and only with
+        //a chariot, horse or cannon left, because with only soldiers / advisors / elephants zugzwang is common
+        if (nullMove && allowNull && !pvNode && !inCheck && depth >= 2 && staticEval >= beta && Math.abs(beta) < MATE - MAX_PLY) {
+            int attackers = countAttackingPieces(side);
+            if (attackers > 0) {
+                int reduction = depth > 6 ? 3 : 2;
+                board.makeNullMove();
+                nodes++;
+                int score = -alphaBeta(depth - 1 - reduction, -beta, -beta + 1, ply + 1, false);
+                board.unmakeNullMove();
+                if (aborted) {
+                    return 0;
+                }
+                if (score >= beta) {
+                    //a single attacking piece can still be in zugzwang: verify with a reduced normal search
+                    if (attackers > 1 || alphaBeta(depth - reduction, beta - 1, beta, ply, false) >= beta) {
+                        return beta;
+                    }
+                    pvLength[ply] = 0;
+                    if (aborted) {
+                        return 0;
+                    }
+                }
+            }
+        }
+
+        //futility: close to the leaves and far below alpha, quiet moves that don't give check can't catch up
+        boolean futile = futilityPruning && !pvNode && !inCheck && depth < FUTILITY_MARGIN.length
+                && Math.abs(alpha) < MATE - MAX_PLY && staticEval + FUTILITY_MARGIN[depth] <= alpha;
+
+        MovePicker picker = pickers[ply];
+        picker.init(board, ttMove, killers[ply][0], killers[ply][1], moveOrdering);
+        int originalAlpha = alpha;
+        int bestMove = 0;
+        int legal = 0;
+        int move;
+        while ((move = picker.next()) != 0) {
+            int to = ChessBoardModel.moveTo(move);
+            boolean quiet = board.getPieceAt(to / 9, to % 9) == null;
+            if (!pinInfo.isLegal(board, move)) {
+                continue;
+            }
+            board.makeMove(move);
+            legal++;
+            boolean givesCheck = board.generalInCheck(!side);
+            if (futile && legal > 1 && quiet && !givesCheck) {
+                board.unmakeMove();
+                continue;
+            }
+            nodes++;
+            //check extension, limited to twice the nominal depth so perpetual checks can't run away
+            int newDepth = depth - 1;
+            if (checkExtensions && givesCheck && ply < 2 * rootDepth) {
+                newDepth++;
+            }
+            int score;
+            if (legal == 1) {
+                score = -alphaBeta(newDepth, -beta, -alpha, ply + 1, true);
+            } else {
+                //late quiet moves are searched shallower first and only get the full depth if they beat alpha
+                int reduction = 0;
+                if (lateMoveReductions && depth >= 3 && legal > 3 && quiet && !inCheck && !givesCheck
+                        && move != killers[ply][0] && move != killers[ply][1]) {
+                    reduction = lmrTable[Math.min(depth, 63)][Math.min(legal, 63)];
+                    if (pvNode) {
+                        reduction--;
+                    }
+                    reduction = Math.max(0, Math.min(reduction, newDepth - 1));
+                }
+                score = -alphaBeta(newDepth - reduction, -alpha - 1, -alpha, ply + 1, true);//null window
+                if (reduction > 0 && score > alpha && !aborted) {
+                    score = -alphaBeta(newDepth, -alpha - 1, -alpha, ply + 1, true);
+                }
+                if (score > alpha && score < beta && !aborted) {
+                    score = -alphaBeta(newDepth, -beta, -alpha, ply + 1, true);
+                }
+            }
+            board.unmakeMove();
+            if (aborted) {
+                return 0;
+            }
+            if (score > alpha) {
+                alpha = score;
+                bestMove = move;
+                updatePv(ply, move);
+                if (alpha >= beta) {
+                    if (quiet) {
+                        rememberCutoff(move, depth, ply);
+                    }
+                    break;
+                }
+            }
+        }
+        if (legal == 0) {
+            //no moves: mated if in check, otherwise a draw (same stalemate rule as ChessBoardModel.checkEndgame)
+            return inCheck ? -MATE + ply : 0;
+        }
+        int bound = alpha >= beta ? TranspositionTable.BOUND_LOWER
+                : alpha > originalAlpha ? TranspositionTable.BOUND_EXACT : TranspositionTable.BOUND_UPPER;
+        tt.store(hash, bestMove, scoreToTt(alpha, ply), depth, bound);
+        return alpha;
+    }
+
+    //captures only, until the position is quiet; the side to move may always "stand pat" on the static evaluation
+    //except when in check, then every evasion is searched (and no evasion is mate)
+    //captures that lose material by static exchange are skipped, the rest go most valuable victim first
+    private int quiesce(int alpha, int beta, int ply) {
+        pvLength[ply] = 0;
+        if ((nodes & (CHECK_EVERY - 1)) == 0 && limitReached()) {
+            aborted = true;
+            return 0;
+        }
+        if (ply >= MAX_PLY) {
+            return evaluator.evaluate(board);
+        }
+        boolean side = board.isRedTurn();
+        PinInfo pinInfo = pins[ply];
+        pinInfo.compute(board, side);
+        boolean inCheck = pinInfo.isInCheck();
+        if (!inCheck) {
+            int standPat = evaluator.evaluate(board);
+            if (standPat >= beta) {
+                return standPat;
+            }
+            if (standPat > alpha) {
+                alpha = standPat;
+            }
+        }
+
+        int offset = ply * MoveGenerator.MAX_MOVES;
+        int generated = MoveGenerator.generate(board, side, moveStack, offset);
+        int end = offset;
+        for (int i = offset; i < generated; i++) {
+            int move = moveStack[i];
+            int to = ChessBoardModel.moveTo(move);
+            AbstractPiece victim = board.getPieceAt(to / 9, to % 9);
+            if (victim == null) {
+                if (inCheck) {
+                    moveStack[end] = move;
+                    scoreStack[end++] = 0;
+                }
+                continue;
+            }
+            int from = ChessBoardModel.moveFrom(move);
+            int victimValue = Evaluator.MATERIAL[victim.getType()];
+            int attackerValue = Evaluator.MATERIAL[board.getPieceAt(from / 9, from % 9).getType()];
+            //taking something at least as valuable can't lose material, only the rest needs the full exchange
+            if (!inCheck && victimValue < attackerValue && exchange.see(board, move) < 0) {
+                continue;
+            }
+            moveStack[end] = move;
+            scoreStack[end++] = victimValue * 16 - attackerValue / 50;
+        }
+
+        int legal = 0;
+        for (int i = offset; i < end; i++) {
+            //selection sort step: bring the best remaining capture forward
+            int best = i;
+            for (int j = i + 1; j < end; j++) {
+                if (scoreStack[j] > scoreStack[best]) {
+                    best = j;
+                }
+            }
+            int move = moveStack[best];
+            moveStack[best] = moveStack[i];
+            scoreStack[best] = scoreStack[i];
+            moveStack[i] = move;
+
+            if (!pinInfo.isLegal(board, move)) {
+                continue;
+            }
+            board.makeMove(move);
+            nodes++;
+            legal++;
+            int score = -quiesce(-beta, -alpha, ply + 1);
+            board.unmakeMove();
+            if (aborted) {
+                return 0;
+            }
+            if (score > alpha) {
+                alpha = score;
+                updatePv(ply, move);
+                if (alpha >= beta) {
+                    break;
+                }
+            }
+        }
+        if (inCheck && legal == 0) {
+            return -MATE + ply;
+        }
+        return alpha;
+    }
+
+    //chariots, horses and cannons: the pieces that can make progress, see the null move guard
+    private int countAttackingPieces(boolean red) {
+        int count = 0;
+        List<AbstractPiece> pieces = board.getPieces();
+        for (int i = 0; i < pieces.size(); i++) {
+            AbstractPiece p = pieces.get(i);
+            int type = p.getType();
+            if (p.isRed() == red && (type == PieceType.CHARIOT || type == PieceType.HORSE || type == PieceType.CANNON)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    //a quiet move refuted the opponent's last move: keep it as killer for this ply and raise its history score
+    private void rememberCutoff(int move, int depth, int ply) {
+        if (killers[ply][0] != move) {
+            killers[ply][1] = killers[ply][0];
+            killers[ply][0] = move;
+        }
+        int from = ChessBoardModel.moveFrom(move);
+        AbstractPiece p = board.getPieceAt(from / 9, from % 9);
+        int[] row = history[PieceType.index(p.getType(), p.isRed())];
+        row[ChessBoardModel.moveTo(move)] += depth * depth;
+        if (row[ChessBoardModel.moveTo(move)] > HISTORY_MAX) {
+            ageHistory();
+        }
+    }
+
+    //halve every history score, old knowledge fades but the order stays
+    private void ageHistory() {
+        for (int[] row : history) {
+            for (int i = 0; i < row.length; i++) {
+                row[i] >>= 1;
+            }
+        }
+    }
+
+    //mate scores are stored relative to the node, not the root, so they stay right when reached by another path
+    private static int scoreToTt(int score, int ply) {
+        return score >= MATE - MAX_PLY ? score + ply : score <= -MATE + MAX_PLY ? score - ply : score;
+    }
+
+    private static int scoreFromTt(int score, int ply) {
+        return score >= MATE - MAX_PLY ? score - ply : score <= -MATE + MAX_PLY ? score + ply : score;
+    }
+
+    //same position with the same side to move earlier on the search path, or in the game before the root, counts as
+    //a draw (checkEndgame calls the threefold repetition one); p < 0 walks on into gameHashes, never past a capture
+    private boolean isRepetition(int ply) {
+        int oldest = Math.max(ply - board.getHalfmoveClock(), -gameHashes.length);
+        for (int p = ply - 2; p >= oldest; p -= 2) {
+            long seen = p >= 0 ? pathHashes[p] : gameHashes[gameHashes.length + p];
+            if (seen == pathHashes[ply]) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void updatePv(int ply, int move) {
+        pvTable[ply][0] = move;
+        System.arraycopy(pvTable[ply + 1], 0, pvTable[ply], 1, pvLength[ply + 1]);
+        pvLength[ply] = pvLength[ply + 1] + 1;
+    }
+
+    private boolean limitReached() {
+        if (stopFlag.get()) {
+            return true;
+        }
+        if (limits.getNodes() > 0 && nodes >= limits.getNodes()) {
+            return true;
+        }
+        return System.currentTimeMillis() >= deadline;
+    }
+
+    private long elapsed() {
+        return System.currentTimeMillis() - startTime;
+    }
+
+    public long getNodes() {
+        return nodes;
+    }
+}
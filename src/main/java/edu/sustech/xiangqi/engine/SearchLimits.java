@@ -0,0 +1,60 @@
+package edu.sustech.xiangqi.engine;
+
+//when a search has to stop: depth reached, node budget used up or time over (0 = no limit)
+//with a soft time limit as well (clock games, see TimeManager) no new iteration is started once it is used up,
+//the time limit proper is then the hard one that aborts the search in the middle of an iteration
+public class SearchLimits {
+    public static final int MAX_DEPTH = 64;
+
+    private final int depth;
+    private final long nodes;
+    private final long timeMillis;
+    private final long softTimeMillis;
+
+    public SearchLimits(int depth, long nodes, long timeMillis) {
+        this(depth, nodes, timeMillis, 0);
+    }
+
+    public SearchLimits(int depth, long nodes, long timeMillis, long softTimeMillis) {
+        this.depth = depth <= 0 ? MAX_DEPTH : Math.min(depth, MAX_DEPTH);
+        this.nodes = nodes;
+        this.timeMillis = timeMillis;
+        this.softTimeMillis = softTimeMillis;
+    }
+
+    public static SearchLimits depth(int depth) {
+        return new SearchLimits(depth, 0, 0);
+    }
+
+    public static SearchLimits time(long millis) {
+        return new SearchLimits(MAX_DEPTH, 0, millis);
+    }
+
+    public static SearchLimits time(long softMillis, long hardMillis) {
+        return new SearchLimits(MAX_DEPTH, 0, hardMillis, softMillis);
+    }
+
+    public static SearchLimits nodes(long nodes) {
+        return new SearchLimits(MAX_DEPTH, nodes, 0);
+    }
+
+    public static SearchLimits infinite() {
+        return new SearchLimits(MAX_DEPTH, 0, 0);
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
+    public long getNodes() {
+        return nodes;
+    }
+
+    public long getTimeMillis() {
+        return timeMillis;
+    }
+
+    public long getSoftTimeMillis() {
+        return softTimeMillis;
+    }
+}
@@ -0,0 +1,71 @@
+package edu.sustech.xiangqi.engine;
+
+import edu.sustech.xiangqi.model.ChessBoardModel;
+
+//outcome of one (finished) search iteration: best move + score from the side to move's view
+public class SearchResult {
+    private final int bestMove;//ChessBoardModel.encodeMove value, 0 = no legal move
+    private final int score;
+    private final int depth;
+    private final int[] pv;
+    private final long nodes;
+    private final long timeMillis;
+
+    public SearchResult(int bestMove, int score, int depth, int[] pv, long nodes, long timeMillis) {
+        this.bestMove = bestMove;
+        this.score = score;
+        this.depth = depth;
+        this.pv = pv;
+        this.nodes = nodes;
+        this.timeMillis = timeMillis;
+    }
+
+    public int getBestMove() {
+        return bestMove;
+    }
+
+    public boolean hasMove() {
+        return bestMove != 0;
+    }
+
+    public int getScore() {
+        return score;
+    }
+
+    public int getDepth() {
+        return depth;
+    }
+
+    public int[] getPv() {
+        return pv.clone();
+    }
+
+    public long getNodes() {
+        return nodes;
+    }
+
+    public long getTimeMillis() {
+        return timeMillis;
+    }
+
+    public boolean isMateScore() {
+        return Math.abs(score) >= Search.MATE - SearchLimits.MAX_DEPTH * 2;
+    }
+
+    //principal variation in ICCS, e.g. "h2e2 h9g7 b0c2"
+    public String pvString() {
+        StringBuilder sb = new StringBuilder();
+        for (int move : pv) {
+            if (sb.length() > 0) {
+                sb.append(' ');
+            }
+            sb.append(ChessBoardModel.toIccs(move));
+        }
+        return sb.toString();
+    }
+
+    @Override
+    public String toString() {
+        return "depth " + depth + " score " + score + " nodes " + nodes + " time " + timeMillis + "ms pv " + pvString();
+    }
+}
@@ -0,0 +1,75 @@
+package edu.sustech.xiangqi.engine;
+
+import edu.sustech.xiangqi.model.AbstractPiece;
+import edu.sustech.xiangqi.model.ChessBoardModel;
+import edu.sustech.xiangqi.model.PieceType;
+
+import java.util.List;
+
+//soldier structure cache, keyed by ChessBoardModel.getSoldierHash (soldiers only, so it hits across all the
+//positions that differ just in the other pieces); direct mapped, per search thread
+//structure terms: crossed soldiers side by side protect each other, two soldiers on one file get in each other's way
+public class SoldierTable {
+    private static final int SIZE = 4096;//power of two
+    private static final int CONNECTED_MG = 20;
+    private static final int CONNECTED_EG = 30;
+    private static final int DOUBLED_MG = -15;
+    private static final int DOUBLED_EG = -20;
+
+    private final long[] keys = new long[SIZE];
+    private final int[] entries = new int[SIZE];//key 0 (no soldiers) with entry 0 is already right
+
+    //red-minus-black middlegame (high 16 bits) and endgame (low 16 bits) terms, read with midgame / endgame
+    public int probe(ChessBoardModel model) {
+        long key = model.getSoldierHash();
+        int slot = (int) key & (SIZE - 1);
+        if (keys[slot] == key) {
+            return entries[slot];
+        }
+        int entry = compute(model);
+        keys[slot] = key;
+        entries[slot] = entry;
+        return entry;
+    }
+
+    public static int midgame(int entry) {
+        return entry >> 16;
+    }
+
+    public static int endgame(int entry) {
+        return (short) entry;
+    }
+
+    private static int compute(ChessBoardModel model) {
+        int mg = 0, eg = 0;
+        List<AbstractPiece> pieces = model.getPieces();
+        for (int i = 0; i < pieces.size(); i++) {
+            AbstractPiece p = pieces.get(i);
+            if (p.getType() != PieceType.SOLDIER) {
+                continue;
+            }
+            int sign = p.isRed() ? 1 : -1;
+            int row = p.getRow(), col = p.getCol();
+            boolean crossed = p.isRed() ? row <= 4 : row >= 5;
+            if (crossed && isSoldier(model, row, col + 1, p.isRed())) {
+                mg += sign * CONNECTED_MG;
+                eg += sign * CONNECTED_EG;
+            }
+            //count each pair once: only look ahead of the soldier
+            int ahead = p.isRed() ? -1 : 1;
+            for (int r = row + ahead; r >= 0 && r < ChessBoardModel.getRows(); r += ahead) {
+                if (isSoldier(model, r, col, p.isRed())) {
+                    mg += sign * DOUBLED_MG;
+                    eg += sign * DOUBLED_EG;
+                    break;
+                }
+            }
+        }
+        return mg << 16 | (eg & 0xFFFF);
+    }
+
+    private static boolean isSoldier(ChessBoardModel model, int row, int col, boolean red) {
+        AbstractPiece q = model.getPieceAt(row, col);
+        return q != null && q.isRed() == red && q.getType() == PieceType.SOLDIER;
+    }
+}
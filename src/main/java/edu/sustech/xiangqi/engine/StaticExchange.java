@@ -0,0 +1,77 @@
+package edu.sustech.xiangqi.engine;
+
+import edu.sustech.xiangqi.model.AbstractPiece;
+import edu.sustech.xiangqi.model.AttackDetector;
+import edu.sustech.xiangqi.model.ChessBoardModel;
+
+//static exchange evaluation: material result of the capture sequence on one square, both sides always
+//recapturing with their cheapest piece and free to stop when going on would lose more
+//the exchange is really played on the board (make/unmake), so cannon screens that appear or vanish on the way and
+//horse legs and elephant eyes freed by a capture are seen; an attacker that can't recapture legally (pinned, or the
+//general stepping into an attack) is passed over for the next cheapest one
+public class StaticExchange {
+    private static final int MAX_EXCHANGE = 32;
+
+    private final int[] gain = new int[MAX_EXCHANGE];//swap list, one instance per search thread
+
+    //gain for the side making the capture, in Evaluator.MATERIAL units (negative: the capture loses material)
+    public int see(ChessBoardModel board, int move) {
+        int to = ChessBoardModel.moveTo(move);
+        int from = ChessBoardModel.moveFrom(move);
+        int toRow = to / 9, toCol = to % 9;
+        AbstractPiece victim = board.getPieceAt(toRow, toCol);
+        AbstractPiece attacker = board.getPieceAt(from / 9, from % 9);
+        if (victim == null || attacker == null) {
+            return 0;
+        }
+
+        gain[0] = Evaluator.MATERIAL[victim.getType()];
+        int onSquare = Evaluator.MATERIAL[attacker.getType()];//value of the piece that would be taken next
+        board.makeMove(move);
+        int made = 1;
+        int d = 0;
+        boolean side = board.isRedTurn();
+        while (d + 1 < MAX_EXCHANGE) {
+            AbstractPiece next = recapture(board, to, side);
+            if (next == null) {
+                break;
+            }
+            made++;
+            d++;
+            gain[d] = onSquare - gain[d - 1];
+            onSquare = Evaluator.MATERIAL[next.getType()];
+            side = !side;
+        }
+        for (int i = 0; i < made; i++) {
+            board.unmakeMove();
+        }
+        while (d > 0) {
+            gain[d - 1] = -Math.max(-gain[d - 1], gain[d]);
+            d--;
+        }
+        return gain[0];
+    }
+
+    //plays the cheapest legal recapture on to for side and returns the piece that made it (null: none)
+    //an attacker that can't take (pinned, or the general stepping into an attack) is skipped for the next cheapest
+    private static AbstractPiece recapture(ChessBoardModel board, int to, boolean side) {
+        long skipLo = 0, skipHi = 0;
+        while (true) {
+            int sq = AttackDetector.cheapestAttacker(board, to, side, skipLo, skipHi);
+            if (sq < 0) {
+                return null;
+            }
+            AbstractPiece next = board.getPieceAt(sq / 9, sq % 9);
+            board.makeMove(ChessBoardModel.encodeMove(sq, to));
+            if (!board.generalInCheck(side)) {
+                return next;
+            }
+            board.unmakeMove();
+            if (sq < 64) {
+                skipLo |= 1L << sq;
+            } else {
+                skipHi |= 1L << (sq - 64);
+            }
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package edu.sustech.xiangqi.engine;
+
+//how long to think about one move when playing on a clock
+//allocate() turns the clock into a soft limit (the usual share of the remaining time, no new iteration after it)
+//and a hard limit (abort, never more than can be spent without losing on time)
+//during the search one TimeManager judges, after every finished iteration, whether the next one is worth starting:
+//the soft limit is stretched while the best move keeps changing between iterations, shrunk once it has stayed the same,
+//and cut short for a recapture the iterations agree on (taking back a piece needs no deep search)
+public class TimeManager {
+    public static final long MOVE_OVERHEAD_MS = 50;//kept back for making the move / sending it to the GUI
+    private static final int MIN_MOVES_TO_GO = 15;//time is shared out over at least this many moves
+    private static final int HARD_FACTOR = 4;//the hard limit is at most this many soft limits ...
+    private static final int HARD_SHARE = 3;//... and at most a third of the base time (plus increment / byoyomi)
+    //soft limit in percent by the number of iterations in a row that kept the same best move
+    private static final int[] STABILITY_PERCENT = {160, 120, 100, 80, 65, 55};
+    private static final int RECAPTURE_PERCENT = 20;
+    private static final int RECAPTURE_STABLE = 2;//iterations a recapture has to stay best before it counts as obvious
+
+    private final long start = System.currentTimeMillis();
+    private final long softMillis;
+    private int lastBestMove = 0;
+    private int stableIterations = 0;
+
+    public TimeManager(long softMillis) {
+        this.softMillis = softMillis;
+    }
+
+    //limits for the next move from the clock of the side to move
+    //timeLeft: base time left, increment: added after the move, byoyomi: period every move may use for free (0 if none),
+    //movesToGo: moves until the next time control (0 = sudden death), moveNumber: full move number of the game
+    public static SearchLimits allocate(long timeLeft, long increment, long byoyomi, int movesToGo, int moveNumber) {
+        int moves = movesToGo > 0 ? movesToGo : Math.max(MIN_MOVES_TO_GO, 50 - moveNumber / 2);
+        long soft = timeLeft / moves + increment * 3 / 4 + byoyomi * 3 / 4;
+        long hard = Math.min(soft * HARD_FACTOR, timeLeft / HARD_SHARE + increment + byoyomi);
+        //the increment only arrives after the move, a byoyomi period is there to be used
+        long safe = timeLeft + byoyomi - MOVE_OVERHEAD_MS;
+        hard = Math.max(1, Math.min(hard, safe > 0 ? safe : (timeLeft + byoyomi) / 2));
+        soft = Math.max(1, Math.min(soft, hard));
+        return SearchLimits.time(soft, hard);
+    }
+
+    //called after every finished iteration, false when the next one should not be started
+    public boolean startNextIteration(int bestMove, boolean recapture) {
+        stableIterations = bestMove == lastBestMove ? stableIterations + 1 : 0;
+        lastBestMove = bestMove;
+        int percent = recapture && stableIterations >= RECAPTURE_STABLE
+                ? RECAPTURE_PERCENT
+                : STABILITY_PERCENT[Math.min(stableIterations, STABILITY_PERCENT.length - 1)];
+        long elapsed = System.currentTimeMillis() - start;
+        return elapsed < softMillis * percent / 100;
+    }
+}
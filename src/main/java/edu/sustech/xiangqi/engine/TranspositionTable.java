@@ -0,0 +1,123 @@
+package edu.sustech.xiangqi.engine;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+//fixed-size hash table of search results, kept off-heap in a direct ByteBuffer so a big table costs the GC nothing
+//bucket = 2 entries of 2 longs: slot 0 keeps the deepest result, slot 1 is always replaced
+//entry = (key ^ data, data): threads read and write without locks, a torn / mixed entry fails the key check and is a miss
+//data word: move 0-13 | score + 32768 14-29 | depth 30-37 | bound 38-39 | generation 40-47 (never 0, bound >= 1)
+public class TranspositionTable {
+    public static final int BOUND_UPPER = 1;//score <= value (failed low)
+    public static final int BOUND_LOWER = 2;//score >= value (failed high)
+    public static final int BOUND_EXACT = 3;
+
+    private static final int ENTRY_BYTES = 16;
+    private static final int BUCKET_BYTES = ENTRY_BYTES * 2;
+    private static final VarHandle LONGS = MethodHandles.byteBufferViewVarHandle(long[].class, ByteOrder.nativeOrder());
+
+    private final ByteBuffer buffer;
+    private final long bucketMask;
+    private volatile int generation = 1;
+
+    public TranspositionTable(int megabytes) {
+        long bytes = Math.max(1, megabytes) * 1024L * 1024L;
+        long buckets = Long.highestOneBit(Math.min(bytes, Integer.MAX_VALUE) / BUCKET_BYTES);//power of two for masking
+        buffer = ByteBuffer.allocateDirect((int) (buckets * BUCKET_BYTES)).order(ByteOrder.nativeOrder());
+        bucketMask = buckets - 1;
+    }
+
+    //call once per new root search: older entries become first in line for replacement
+    public void newSearch() {
+        generation = (generation % 255) + 1;
+    }
+
+    public void clear() {
+        for (int i = 0; i < buffer.capacity(); i += 8) {
+            LONGS.setOpaque(buffer, i, 0L);
+        }
+    }
+
+    //data word stored for this key, 0 if not found
+    public long probe(long key) {
+        int base = bucketOffset(key);
+        for (int slot = 0; slot < 2; slot++) {
+            int offset = base + slot * ENTRY_BYTES;
+            long data = (long) LONGS.getOpaque(buffer, offset + 8);
+            long check = (long) LONGS.getOpaque(buffer, offset);
+            if (data != 0 && (check ^ data) == key) {
+                return data;
+            }
+        }
+        return 0L;
+    }
+
+    public void store(long key, int move, int score, int depth, int bound) {
+        int base = bucketOffset(key);
+        long data = pack(move, score, depth, bound, generation);
+
+        //depth-preferred slot: take it if it's the same position, empty, from an older search or not deeper
+        long old = (long) LONGS.getOpaque(buffer, base + 8);
+        long oldKey = (long) LONGS.getOpaque(buffer, base) ^ old;
+        int offset = base + ENTRY_BYTES;//otherwise the always-replace slot
+        if (old == 0 || oldKey == key || generation(old) != generation || depth >= depth(old)) {
+            offset = base;
+            if (oldKey == key && move == 0) {
+                data = pack(move(old), score, depth, bound, generation);//keep the known best move
+            }
+        }
+        LONGS.setOpaque(buffer, offset, key ^ data);
+        LONGS.setOpaque(buffer, offset + 8, data);
+    }
+
+    //permill of sampled depth-preferred slots filled in this search (UCCI "hashfull")
+    public int hashfull() {
+        int used = 0;
+        int samples = (int) Math.min(1000, bucketMask + 1);
+        for (int i = 0; i < samples; i++) {
+            long data = (long) LONGS.getOpaque(buffer, i * BUCKET_BYTES + 8);
+            if (data != 0 && generation(data) == generation) {
+                used++;
+            }
+        }
+        return used * 1000 / samples;
+    }
+
+    public int sizeInMegabytes() {
+        return buffer.capacity() / (1024 * 1024);
+    }
+
+    private int bucketOffset(long key) {
+        return (int) ((key ^ (key >>> 32)) & bucketMask) * BUCKET_BYTES;
+    }
+
+    private static long pack(int move, int score, int depth, int bound, int generation) {
+        return (move & 0x3FFFL)
+                | ((long) (score + 32768) & 0xFFFFL) << 14
+                | ((long) Math.max(0, Math.min(depth, 255))) << 30
+                | ((long) bound) << 38
+                | ((long) generation) << 40;
+    }
+
+    public static int move(long data) {
+        return (int) (data & 0x3FFF);
+    }
+
+    public static int score(long data) {
+        return (int) ((data >>> 14) & 0xFFFF) - 32768;
+    }
+
+    public static int depth(long data) {
+        return (int) ((data >>> 30) & 0xFF);
+    }
+
+    public static int bound(long data) {
+        return (int) ((data >>> 38) & 0x3);
+    }
+
+    private static int generation(long data) {
+        return (int) ((data >>> 40) & 0xFF);
+    }
+}
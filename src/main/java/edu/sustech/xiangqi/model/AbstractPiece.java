@@ -44,6 +44,8 @@ public abstract class AbstractPiece { //fields
             ChessBoardModel model
     );      //polymorphism:  later in chessboardmodel "piece.canMoveTo(r, c, this);" piece can be any piece
 
+    public abstract int getType();//one of the PieceType ids
+
     @Override
     public String toString() {
         return (isRed ? "Red " : "Black ") + name + " at (" + row + ", " + col + ")";
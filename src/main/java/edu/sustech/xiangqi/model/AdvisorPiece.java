@@ -5,6 +5,11 @@ package edu.sustech.xiangqi.model;
             super(name, row, col, isRed);
         }
 
+        @Override
+        public int getType() {
+            return PieceType.ADVISOR;
+        }
+
         @Override
         public boolean canMoveTo(int targetRow, int targetCol, ChessBoardModel model) {
             int currentRow = getRow();
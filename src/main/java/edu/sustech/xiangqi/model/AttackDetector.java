@@ -0,0 +1,142 @@
+package edu.sustech.xiangqi.model;
+
+import static edu.sustech.xiangqi.model.AttackTables.*;
+
+//check detection that works outward from the general's square instead of asking every enemy piece:
+//4 rays (chariot, cannon behind exactly one screen, facing general), up to 8 horse squares, up to 3 soldier squares
+//advisors and elephants can never leave their own half / palace, so they can't give check and are not looked at
+public final class AttackDetector {
+    private static final int[] ROW_STEP = {-1, 1, 0, 0};
+    private static final int[] COL_STEP = {0, 0, -1, 1};
+
+    private AttackDetector() {
+    }
+
+    //is the general standing on (row, col) attacked by the side byRed
+    public static boolean isGeneralAttacked(ChessBoardModel model, int row, int col, boolean byRed) {
+        for (int d = 0; d < 4; d++) {
+            int r = row + ROW_STEP[d], c = col + COL_STEP[d];
+            AbstractPiece first = null;
+            while (model.isValidPosition(r, c)) {
+                AbstractPiece q = model.getPieceAt(r, c);
+                r += ROW_STEP[d];
+                c += COL_STEP[d];
+                if (q == null) {
+                    continue;
+                }
+                if (first == null) {
+                    first = q;
+                    if (q.isRed() == byRed) {
+                        int type = q.getType();
+                        if (type == PieceType.CHARIOT || (type == PieceType.GENERAL && COL_STEP[d] == 0)) {
+                            return true;//open line to a chariot, or the generals face each other
+                        }
+                    }
+                } else {
+                    if (q.isRed() == byRed && q.getType() == PieceType.CANNON) {
+                        return true;//cannon behind exactly one screen
+                    }
+                    break;
+                }
+            }
+        }
+
+        int sq = square(row, col);
+        int[] horses = HORSE_ATTACKERS[sq];
+        int[] legs = HORSE_ATTACKER_LEGS[sq];
+        for (int i = 0; i < horses.length; i++) {
+            if (isPiece(model, horses[i], PieceType.HORSE, byRed) && model.getPieceAt(legs[i] / 9, legs[i] % 9) == null) {
+                return true;
+            }
+        }
+        for (int s : SOLDIER_ATTACKERS[byRed ? 0 : 1][sq]) {
+            if (isPiece(model, s, PieceType.SOLDIER, byRed)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    //square of the cheapest piece of side byRed that can capture on sq (-1 if none), used for exchange evaluation
+    //order: soldier, advisor, elephant, horse, cannon, chariot, general; pins are not looked at here
+    //rays are scanned on the current board, so a cannon whose screen was just traded off is seen correctly
+    public static int cheapestAttacker(ChessBoardModel model, int sq, boolean byRed) {
+        return cheapestAttacker(model, sq, byRed, 0, 0);
+    }
+
+    //same, but the pieces on the squares of (skipLo, skipHi) (two longs, as in AttackTables) are passed over,
+    //e.g. attackers already found unable to capture legally; they still block lines and screen cannons
+    public static int cheapestAttacker(ChessBoardModel model, int sq, boolean byRed, long skipLo, long skipHi) {
+        int color = byRed ? 0 : 1;
+        for (int s : SOLDIER_ATTACKERS[color][sq]) {
+            if (isPiece(model, s, PieceType.SOLDIER, byRed) && !isIn(skipLo, skipHi, s)) {
+                return s;
+            }
+        }
+        for (int a : ADVISOR_TARGETS[color][sq]) {
+            if (has(ADVISOR[color], a, sq) && isPiece(model, a, PieceType.ADVISOR, byRed) && !isIn(skipLo, skipHi, a)) {
+                return a;
+            }
+        }
+        int[] elephants = ELEPHANT_TARGETS[color][sq];
+        int[] eyes = ELEPHANT_EYES[color][sq];
+        for (int i = 0; i < elephants.length; i++) {
+            if (has(ELEPHANT[color], elephants[i], sq) && isPiece(model, elephants[i], PieceType.ELEPHANT, byRed)
+                    && model.getPieceAt(eyes[i] / 9, eyes[i] % 9) == null && !isIn(skipLo, skipHi, elephants[i])) {
+                return elephants[i];
+            }
+        }
+        int[] horses = HORSE_ATTACKERS[sq];
+        int[] legs = HORSE_ATTACKER_LEGS[sq];
+        for (int i = 0; i < horses.length; i++) {
+            if (isPiece(model, horses[i], PieceType.HORSE, byRed) && model.getPieceAt(legs[i] / 9, legs[i] % 9) == null
+                    && !isIn(skipLo, skipHi, horses[i])) {
+                return horses[i];
+            }
+        }
+
+        int row = sq / 9, col = sq % 9;
+        int chariot = -1;
+        for (int d = 0; d < 4; d++) {
+            int r = row + ROW_STEP[d], c = col + COL_STEP[d];
+            boolean screened = false;
+            while (model.isValidPosition(r, c)) {
+                AbstractPiece q = model.getPieceAt(r, c);
+                if (q != null) {
+                    if (!screened) {
+                        if (chariot < 0 && q.isRed() == byRed && q.getType() == PieceType.CHARIOT
+                                && !isIn(skipLo, skipHi, square(r, c))) {
+                            chariot = square(r, c);
+                        }
+                        screened = true;
+                    } else {
+                        if (q.isRed() == byRed && q.getType() == PieceType.CANNON && !isIn(skipLo, skipHi, square(r, c))) {
+                            return square(r, c);
+                        }
+                        break;
+                    }
+                }
+                r += ROW_STEP[d];
+                c += COL_STEP[d];
+            }
+        }
+        if (chariot >= 0) {
+            return chariot;
+        }
+        for (int g : GENERAL_TARGETS[color][sq]) {
+            if (has(GENERAL[color], g, sq) && isPiece(model, g, PieceType.GENERAL, byRed) && !isIn(skipLo, skipHi, g)) {
+                return g;
+            }
+        }
+        return -1;
+    }
+
+    private static boolean isPiece(ChessBoardModel model, int sq, int type, boolean isRed) {
+        AbstractPiece q = model.getPieceAt(sq / 9, sq % 9);
+        return q != null && q.isRed() == isRed && q.getType() == type;
+    }
+
+    private static boolean isIn(long lo, long hi, int sq) {
+        return ((sq < 64 ? lo : hi) >>> (sq & 63) & 1L) != 0;
+    }
+}
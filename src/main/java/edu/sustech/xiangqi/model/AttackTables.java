@@ -0,0 +1,206 @@
+package edu.sustech.xiangqi.model;
+
+import java.util.Arrays;
+
+//precomputed move patterns for the bitboard code, square = row * 9 + col
+//a square set is two longs: bit sq of the low word for sq < 64, bit (sq - 64) of the high word for the rest
+//tables are flat long arrays, the set for square sq lives at [2 * sq] (low) and [2 * sq + 1] (high)
+public final class AttackTables {
+    public static final int SQUARES = 90;
+    private static final int ROWS = 10;
+    private static final int COLS = 9;
+
+    //color 0 = red, 1 = black (same as the isRed ? 0 : 1 used everywhere in the bitboard code)
+    public static final long[][] GENERAL = new long[2][SQUARES * 2];//palace steps
+    public static final long[][] ADVISOR = new long[2][SQUARES * 2];//palace diagonals
+    public static final long[][] ELEPHANT = new long[2][SQUARES * 2];//2x2 jumps on own side of the river
+    public static final long[][] ELEPHANT_EYE_MASK = new long[2][SQUARES * 2];//every eye square an elephant on sq depends on
+    public static final long[][] SOLDIER = new long[2][SQUARES * 2];//forward only before the river, forward + sideways after
+    public static final long[] HORSE = new long[SQUARES * 2];
+    public static final long[] HORSE_LEG_MASK = new long[SQUARES * 2];
+
+    //jump lists with the blocking square at the same position: ELEPHANT_EYES[c][sq][i] blocks ELEPHANT_TARGETS[c][sq][i]
+    public static final int[][][] ELEPHANT_TARGETS = new int[2][SQUARES][];
+    public static final int[][][] ELEPHANT_EYES = new int[2][SQUARES][];
+    public static final int[][] HORSE_TARGETS = new int[SQUARES][];
+    public static final int[][] HORSE_LEGS = new int[SQUARES][];
+
+    //plain target lists of the step pieces, same content as the sets above (for move generation)
+    public static final int[][][] GENERAL_TARGETS = new int[2][SQUARES][];
+    public static final int[][][] ADVISOR_TARGETS = new int[2][SQUARES][];
+    public static final int[][][] SOLDIER_TARGETS = new int[2][SQUARES][];
+
+    //reverse tables for check detection: where an attacker has to stand to hit sq
+    //HORSE_ATTACKER_LEGS[sq][i] is the leg square the horse on HORSE_ATTACKERS[sq][i] needs empty (it touches sq diagonally)
+    public static final int[][] HORSE_ATTACKERS = new int[SQUARES][];
+    public static final int[][] HORSE_ATTACKER_LEGS = new int[SQUARES][];
+    public static final int[][][] SOLDIER_ATTACKERS = new int[2][SQUARES][];//[attacker color][sq]
+
+    //squares strictly between two squares of the same row or column, set for (from, to) at [2 * (from * 90 + to)]
+    public static final long[] BETWEEN = new long[SQUARES * SQUARES * 2];
+
+    private static final int[][] HORSE_JUMPS = {{-2, -1}, {-2, 1}, {2, -1}, {2, 1}, {-1, -2}, {1, -2}, {-1, 2}, {1, 2}};
+    private static final int[][] ELEPHANT_JUMPS = {{-2, -2}, {-2, 2}, {2, -2}, {2, 2}};
+
+    static {
+        for (int sq = 0; sq < SQUARES; sq++) {
+            int r = sq / COLS;
+            int c = sq % COLS;
+            for (int color = 0; color < 2; color++) {
+                boolean red = color == 0;
+                int palaceTop = red ? 7 : 0;
+                //general: one orthogonal step inside the palace
+                int[][] steps = {{-1, 0}, {1, 0}, {0, -1}, {0, 1}};
+                for (int[] d : steps) {
+                    int tr = r + d[0], tc = c + d[1];
+                    if (tr >= palaceTop && tr <= palaceTop + 2 && tc >= 3 && tc <= 5) {
+                        set(GENERAL[color], sq, tr * COLS + tc);
+                    }
+                }
+                //advisor: one diagonal step inside the palace
+                for (int dr = -1; dr <= 1; dr += 2) {
+                    for (int dc = -1; dc <= 1; dc += 2) {
+                        int tr = r + dr, tc = c + dc;
+                        if (tr >= palaceTop && tr <= palaceTop + 2 && tc >= 3 && tc <= 5) {
+                            set(ADVISOR[color], sq, tr * COLS + tc);
+                        }
+                    }
+                }
+                //elephant: 2x2 jump that stays on its own side, eye is the middle square
+                int[] targets = new int[4];
+                int[] eyes = new int[4];
+                int n = 0;
+                for (int[] d : ELEPHANT_JUMPS) {
+                    int tr = r + d[0], tc = c + d[1];
+                    if (!onBoard(tr, tc) || (red ? tr < 5 : tr > 4)) {
+                        continue;
+                    }
+                    int to = tr * COLS + tc;
+                    int eye = (r + d[0] / 2) * COLS + (c + d[1] / 2);
+                    set(ELEPHANT[color], sq, to);
+                    set(ELEPHANT_EYE_MASK[color], sq, eye);
+                    targets[n] = to;
+                    eyes[n] = eye;
+                    n++;
+                }
+                ELEPHANT_TARGETS[color][sq] = Arrays.copyOf(targets, n);
+                ELEPHANT_EYES[color][sq] = Arrays.copyOf(eyes, n);
+                //soldier: forward, plus sideways once across the river
+                int forward = red ? -1 : 1;
+                boolean crossed = red ? r < 5 : r >= 5;
+                if (onBoard(r + forward, c)) {
+                    set(SOLDIER[color], sq, (r + forward) * COLS + c);
+                }
+                if (crossed) {
+                    if (c > 0) {
+                        set(SOLDIER[color], sq, sq - 1);
+                    }
+                    if (c < COLS - 1) {
+                        set(SOLDIER[color], sq, sq + 1);
+                    }
+                }
+            }
+            for (int color = 0; color < 2; color++) {
+                GENERAL_TARGETS[color][sq] = toList(GENERAL[color], sq);
+                ADVISOR_TARGETS[color][sq] = toList(ADVISOR[color], sq);
+                SOLDIER_TARGETS[color][sq] = toList(SOLDIER[color], sq);
+            }
+            //horse: 8 jumps, leg is the orthogonal neighbour in the long direction
+            int[] targets = new int[8];
+            int[] legs = new int[8];
+            int n = 0;
+            for (int[] d : HORSE_JUMPS) {
+                int tr = r + d[0], tc = c + d[1];
+                if (!onBoard(tr, tc)) {
+                    continue;
+                }
+                int leg = Math.abs(d[0]) == 2 ? (r + d[0] / 2) * COLS + c : r * COLS + (c + d[1] / 2);
+                int to = tr * COLS + tc;
+                set(HORSE, sq, to);
+                set(HORSE_LEG_MASK, sq, leg);
+                targets[n] = to;
+                legs[n] = leg;
+                n++;
+            }
+            HORSE_TARGETS[sq] = Arrays.copyOf(targets, n);
+            HORSE_LEGS[sq] = Arrays.copyOf(legs, n);
+        }
+
+        for (int sq = 0; sq < SQUARES; sq++) {
+            int[] attackers = new int[8];
+            int[] legs = new int[8];
+            int n = 0;
+            for (int from = 0; from < SQUARES; from++) {
+                int[] targets = HORSE_TARGETS[from];
+                for (int i = 0; i < targets.length; i++) {
+                    if (targets[i] == sq) {
+                        attackers[n] = from;
+                        legs[n] = HORSE_LEGS[from][i];
+                        n++;
+                    }
+                }
+            }
+            HORSE_ATTACKERS[sq] = Arrays.copyOf(attackers, n);
+            HORSE_ATTACKER_LEGS[sq] = Arrays.copyOf(legs, n);
+            for (int color = 0; color < 2; color++) {
+                int[] soldiers = new int[3];
+                int k = 0;
+                for (int from = 0; from < SQUARES; from++) {
+                    if (has(SOLDIER[color], from, sq)) {
+                        soldiers[k++] = from;
+                    }
+                }
+                SOLDIER_ATTACKERS[color][sq] = Arrays.copyOf(soldiers, k);
+            }
+        }
+
+        for (int from = 0; from < SQUARES; from++) {
+            for (int to = 0; to < SQUARES; to++) {
+                int fr = from / COLS, fc = from % COLS, tr = to / COLS, tc = to % COLS;
+                if (from == to || (fr != tr && fc != tc)) {
+                    continue;
+                }
+                int step = fr == tr ? (tc > fc ? 1 : -1) : (tr > fr ? COLS : -COLS);
+                for (int s = from + step; s != to; s += step) {
+                    set(BETWEEN, from * SQUARES + to, s);
+                }
+            }
+        }
+    }
+
+    private AttackTables() {
+    }
+
+    private static boolean onBoard(int r, int c) {
+        return r >= 0 && r < ROWS && c >= 0 && c < COLS;
+    }
+
+    private static int[] toList(long[] table, int slot) {
+        int[] list = new int[Long.bitCount(table[2 * slot]) + Long.bitCount(table[2 * slot + 1])];
+        int n = 0;
+        for (int sq = 0; sq < SQUARES; sq++) {
+            if (has(table, slot, sq)) {
+                list[n++] = sq;
+            }
+        }
+        return list;
+    }
+
+    private static void set(long[] table, int slot, int sq) {
+        table[2 * slot + (sq >>> 6)] |= 1L << (sq & 63);
+    }
+
+    //is sq in the set stored for slot
+    public static boolean has(long[] table, int slot, int sq) {
+        return (table[2 * slot + (sq >>> 6)] >>> (sq & 63) & 1L) != 0;
+    }
+
+    //how many squares two sets share, used for screens and blockers
+    public static int countCommon(long[] table, int slot, long lo, long hi) {
+        return Long.bitCount(table[2 * slot] & lo) + Long.bitCount(table[2 * slot + 1] & hi);
+    }
+
+    public static int square(int row, int col) {
+        return row * COLS + col;
+    }
+}
@@ -0,0 +1,209 @@
+package edu.sustech.xiangqi.model;
+
+import java.util.Arrays;
+
+import static edu.sustech.xiangqi.model.AttackTables.*;
+
+//compact position for analysis work: one 128-bit square set (two longs) per piece type and color
+//answers the same "can this piece go there" question as AbstractPiece.canMoveTo, so both can be cross-checked
+public final class BitboardPosition {
+    private final long[] pieceSets = new long[PieceType.COUNT * 2 * 2];//[2 * PieceType.index] lo, +1 hi
+    private final long[] colorSets = new long[4];//red lo, red hi, black lo, black hi
+    private long occLo;
+    private long occHi;
+    private final int[] board = new int[SQUARES];//PieceType.index + 1, 0 = empty
+    private boolean redTurn = true;
+
+    public static BitboardPosition fromModel(ChessBoardModel model) {
+        BitboardPosition pos = new BitboardPosition();
+        for (AbstractPiece p : model.getPieces()) {
+            pos.put(p.getType(), p.isRed(), square(p.getRow(), p.getCol()));
+        }
+        pos.redTurn = model.isRedTurn();
+        return pos;
+    }
+
+    public void clear() {
+        Arrays.fill(pieceSets, 0L);
+        Arrays.fill(colorSets, 0L);
+        Arrays.fill(board, 0);
+        occLo = 0L;
+        occHi = 0L;
+        redTurn = true;
+    }
+
+    public void put(int type, boolean isRed, int sq) {
+        int index = PieceType.index(type, isRed);
+        toggle(index, sq);
+        board[sq] = index + 1;
+    }
+
+    //empties sq and returns what was there (PieceType.index + 1, 0 if nothing)
+    public int remove(int sq) {
+        int code = board[sq];
+        if (code != 0) {
+            toggle(code - 1, sq);
+            board[sq] = 0;
+        }
+        return code;
+    }
+
+    //plays from -> to without any rule check, returns the captured code for undoMove
+    public int move(int from, int to) {
+        int captured = remove(to);
+        int code = remove(from);
+        board[to] = code;
+        toggle(code - 1, to);
+        redTurn = !redTurn;
+        return captured;
+    }
+
+    public void undoMove(int from, int to, int captured) {
+        int code = remove(to);
+        board[from] = code;
+        toggle(code - 1, from);
+        if (captured != 0) {
+            board[to] = captured;
+            toggle(captured - 1, to);
+        }
+        redTurn = !redTurn;
+    }
+
+    private void toggle(int index, int sq) {
+        int word = sq >>> 6;
+        long bit = 1L << (sq & 63);
+        pieceSets[2 * index + word] ^= bit;
+        colorSets[(index < PieceType.COUNT ? 0 : 2) + word] ^= bit;
+        if (word == 0) {
+            occLo ^= bit;
+        } else {
+            occHi ^= bit;
+        }
+    }
+
+    public boolean isOccupied(int sq) {
+        return board[sq] != 0;
+    }
+
+    //PieceType id at sq, -1 if empty
+    public int typeAt(int sq) {
+        int code = board[sq];
+        return code == 0 ? -1 : (code - 1) % PieceType.COUNT;
+    }
+
+    public boolean isRedAt(int sq) {
+        int code = board[sq];
+        return code != 0 && code - 1 < PieceType.COUNT;
+    }
+
+    public boolean isRedTurn() {
+        return redTurn;
+    }
+
+    public long pieceLo(int type, boolean isRed) {
+        return pieceSets[2 * PieceType.index(type, isRed)];
+    }
+
+    public long pieceHi(int type, boolean isRed) {
+        return pieceSets[2 * PieceType.index(type, isRed) + 1];
+    }
+
+    public long colorLo(boolean isRed) {
+        return colorSets[isRed ? 0 : 2];
+    }
+
+    public long colorHi(boolean isRed) {
+        return colorSets[isRed ? 1 : 3];
+    }
+
+    public long occupiedLo() {
+        return occLo;
+    }
+
+    public long occupiedHi() {
+        return occHi;
+    }
+
+    //square of the given general, -1 if it is not on the board
+    public int generalSquare(boolean isRed) {
+        long lo = pieceLo(PieceType.GENERAL, isRed);
+        if (lo != 0) {
+            return Long.numberOfTrailingZeros(lo);
+        }
+        long hi = pieceHi(PieceType.GENERAL, isRed);
+        return hi != 0 ? 64 + Long.numberOfTrailingZeros(hi) : -1;
+    }
+
+    //same answer as getPieceAt(fromRow, fromCol).canMoveTo(toRow, toCol, model) on the matching ChessBoardModel
+    //(pattern + blockers only, own pieces on the target and checks are left to the caller just like canMoveTo)
+    public boolean canMoveTo(int fromRow, int fromCol, int toRow, int toCol) {
+        int from = square(fromRow, fromCol);
+        int to = square(toRow, toCol);
+        int code = board[from];
+        if (code == 0 || from == to) {
+            return false;
+        }
+        boolean red = code - 1 < PieceType.COUNT;
+        int color = red ? 0 : 1;
+        switch ((code - 1) % PieceType.COUNT) {
+            case PieceType.GENERAL: {
+                if (!has(GENERAL[color], from, to)) {
+                    return false;
+                }
+                int other = generalSquare(!red);//flying general: may not step onto an open file facing the other general
+                if (other >= 0 && other % 9 == toCol) {
+                    return countCommon(BETWEEN, to * SQUARES + other, occLo, occHi) != 0;
+                }
+                return true;
+            }
+            case PieceType.ADVISOR:
+                return has(ADVISOR[color], from, to);
+            case PieceType.ELEPHANT:
+                return has(ELEPHANT[color], from, to) && board[(from + to) / 2] == 0;
+            case PieceType.HORSE: {
+                if (!has(HORSE, from, to)) {
+                    return false;
+                }
+                int[] targets = HORSE_TARGETS[from];
+                for (int i = 0; i < targets.length; i++) {
+                    if (targets[i] == to) {
+                        return board[HORSE_LEGS[from][i]] == 0;
+                    }
+                }
+                return false;
+            }
+            case PieceType.CHARIOT:
+                if (fromRow != toRow && fromCol != toCol) {
+                    return false;
+                }
+                return countCommon(BETWEEN, from * SQUARES + to, occLo, occHi) == 0;
+            case PieceType.CANNON: {
+                if (fromRow != toRow && fromCol != toCol) {
+                    return false;
+                }
+                int screens = countCommon(BETWEEN, from * SQUARES + to, occLo, occHi);
+                return board[to] == 0 ? screens == 0 : screens == 1;
+            }
+            case PieceType.SOLDIER:
+                return has(SOLDIER[color], from, to);
+            default:
+                return false;
+        }
+    }
+
+    //compares every piece x every square against canMoveTo on the model, returns how many answers differ
+    public static int crossCheck(ChessBoardModel model) {
+        BitboardPosition pos = fromModel(model);
+        int mismatches = 0;
+        for (AbstractPiece p : model.getPieces()) {
+            for (int r = 0; r < ChessBoardModel.getRows(); r++) {
+                for (int c = 0; c < ChessBoardModel.getCols(); c++) {
+                    if (p.canMoveTo(r, c, model) != pos.canMoveTo(p.getRow(), p.getCol(), r, c)) {
+                        mismatches++;
+                    }
+                }
+            }
+        }
+        return mismatches;
+    }
+}
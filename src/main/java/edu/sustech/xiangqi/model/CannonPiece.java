@@ -6,6 +6,11 @@ public class CannonPiece extends AbstractPiece {
         super(name, row, col, isRed);
     }
 
+    @Override
+    public int getType() {
+        return PieceType.CANNON;
+    }
+
     @Override
     public boolean canMoveTo(int targetRow, int targetCol, ChessBoardModel model) {
         int currentRow = getRow();
@@ -21,31 +26,17 @@ public class CannonPiece extends AbstractPiece {
             return false;          // cannon must move straight
         }
 
-        // Count pieces between current position and target
-        int betweenCount = 0;                            // number of pieces between
-
+        //quiet moves need an empty path, captures exactly one screen; both from the occupancy tables
+        boolean capture = model.getPieceAt(targetRow, targetCol) != null;
         if (sameRow) {
-            int start = Math.min(currentCol, targetCol) + 1;
-            int end = Math.max(currentCol, targetCol);
-            for (int c = start; c < end; c++) {              // check each square between
-                if (model.getPieceAt(currentRow, c) != null) {
-                    betweenCount++; // found a screen
-                }
-            }
-        }
-        else { // sameCol (vertical move)
-            int start = Math.min(currentRow, targetRow) + 1; // first middle row
-            int end = Math.max(currentRow, targetRow);       // last exclusive
-            for (int r = start; r < end; r++) {              // check each square between
-                if (model.getPieceAt(r, currentCol) != null) betweenCount++; // found a screen
-            }
+            int occupancy = model.getRankOccupancy(currentRow);
+            int targets = capture ? SlidingAttacks.rankCannonCapture(currentCol, occupancy)
+                    : SlidingAttacks.rankCannonQuiet(currentCol, occupancy);
+            return (targets >>> targetCol & 1) != 0;
         }
-        // capture or no capture
-        AbstractPiece targetPiece = model.getPieceAt(targetRow, targetCol);
-        if (targetPiece == null) {
-            return betweenCount == 0;
-        }   // no pcs, cannon just moving
-
-        return betweenCount == 1; // 1 pcs in between, capturing
+        int occupancy = model.getFileOccupancy(currentCol);
+        int targets = capture ? SlidingAttacks.fileCannonCapture(currentRow, occupancy)
+                : SlidingAttacks.fileCannonQuiet(currentRow, occupancy);
+        return (targets >>> targetRow & 1) != 0;
     }
 }
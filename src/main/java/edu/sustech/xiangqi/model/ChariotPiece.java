@@ -5,6 +5,12 @@ public class ChariotPiece extends AbstractPiece {
     public ChariotPiece(String name, int row, int col, boolean isRed) {
         super(name, row, col, isRed);
     }
+
+    @Override
+    public int getType() {
+        return PieceType.CHARIOT;
+    }
+
     @Override
     public boolean canMoveTo(int targetRow, int targetCol, ChessBoardModel model) {
         int currentRow = getRow();
@@ -18,28 +24,10 @@ public class ChariotPiece extends AbstractPiece {
         if (!sameRow && !sameCol) {
             return false;          // diagonal/other is illegal
         }
-        //check blocking pieces (horizontal)
+        //blockers from the occupancy tables, one lookup instead of walking the squares between
         if (sameRow) {
-            int start = Math.min(currentCol, targetCol) + 1;    //first square after the Chariot
-            int end = Math.max(currentCol, targetCol);  //stop before the target square
-
-            for (int c = start; c < end; c++) {              //for loops check pcs
-                if (model.getPieceAt(currentRow, c) != null) {
-                    return false; // blocked
-                }
-            }
-        }
-        else {  //check pcs vertical
-            int start = Math.min(currentRow, targetRow) + 1;
-            int end = Math.max(currentRow, targetRow);
-
-            for (int r = start; r < end; r++) {
-                if (model.getPieceAt(r, currentCol) != null) {
-                    return false;
-                }
-            }
+            return (SlidingAttacks.rankChariot(currentCol, model.getRankOccupancy(currentRow)) >>> targetCol & 1) != 0;
         }
-        return true;
+        return (SlidingAttacks.fileChariot(currentRow, model.getFileOccupancy(currentCol)) >>> targetRow & 1) != 0;
     }
 }
-
@@ -0,0 +1,178 @@
+package edu.sustech.xiangqi.model;
+
+import java.util.List;
+
+import static edu.sustech.xiangqi.model.AttackTables.*;
+
+//moves out of check, instead of playing every move and looking whether the check is gone:
+//general steps, captures of a checking piece, blocks on the line of a chariot / cannon / facing general,
+//a piece put on a checking horse's leg, a second screen in front of a checking cannon or its (own) screen moved away
+//against two checkers a move has to answer both, so in a double check mostly the general moves are left
+//the candidates are still played once to see that the own general is safe (pins, discovered lines), a handful of
+//moves instead of all of them
+public final class CheckEvasion {
+    private static final int[] ROW_STEP = {-1, 1, 0, 0};
+    private static final int[] COL_STEP = {0, 0, -1, 1};
+    static final int MAX_CHECKERS = 9;//4 lines, 2 horses, 3 soldiers
+
+    private CheckEvasion() {
+    }
+
+    //pseudo legal evasions of side isRed, which has to be in check, written from offset on, returns the end offset
+    public static int generate(ChessBoardModel model, boolean isRed, int[] moves, int offset) {
+        AbstractPiece general = model.findGeneral(isRed);
+        if (general == null) {
+            return offset;
+        }
+        int gsq = square(general.getRow(), general.getCol());
+        //per checker: squares a blocking / capturing move can land on (two longs, as in AttackTables) and the screen
+        long[] mask = model.evasionMask;
+        int[] screens = model.evasionScreens;
+        int checkers = findCheckers(model, gsq, !isRed, mask, screens);
+
+        //a piece that is no screen has to land on a square that answers every check
+        long commonLo = -1L, commonHi = -1L;
+        for (int k = 0; k < checkers; k++) {
+            commonLo &= mask[2 * k];
+            commonHi &= mask[2 * k + 1];
+        }
+
+        offset = MoveGenerator.generatePiece(model, general, moves, offset);
+        List<AbstractPiece> pieces = model.getPieces();
+        for (int i = 0; i < pieces.size(); i++) {
+            AbstractPiece p = pieces.get(i);
+            if (p.isRed() != isRed || p == general) {
+                continue;
+            }
+            int from = square(p.getRow(), p.getCol());
+            boolean screen = false;
+            for (int k = 0; k < checkers; k++) {
+                screen |= screens[k] == from;
+            }
+            if (!screen && commonLo == 0 && commonHi == 0) {
+                continue;//nothing this piece can do
+            }
+            int end = MoveGenerator.generatePiece(model, p, moves, offset);
+            for (int m = offset; m < end; m++) {
+                int to = ChessBoardModel.moveTo(moves[m]);
+                if (answersAll(mask, screens, checkers, from, to)) {
+                    moves[offset++] = moves[m];
+                }
+            }
+        }
+        return offset;
+    }
+
+    //legal evasions only
+    public static int generateLegal(ChessBoardModel model, boolean isRed, int[] moves, int offset) {
+        int end = generate(model, isRed, moves, offset);
+        int n = offset;
+        for (int i = offset; i < end; i++) {
+            if (isSafe(model, moves[i], isRed)) {
+                moves[n++] = moves[i];
+            }
+        }
+        return n;
+    }
+
+    //is there any legal way out of the check (false = mated), stops at the first one
+    public static boolean hasEvasion(ChessBoardModel model, boolean isRed) {
+        int[] moves = model.scratchMoves;
+        int end = generate(model, isRed, moves, 0);
+        for (int i = 0; i < end; i++) {
+            if (isSafe(model, moves[i], isRed)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isSafe(ChessBoardModel model, int move, boolean isRed) {
+        model.makeMove(move);
+        boolean safe = !model.generalInCheck(isRed);
+        model.unmakeMove();
+        return safe;
+    }
+
+    private static boolean answersAll(long[] mask, int[] screens, int checkers, int from, int to) {
+        for (int k = 0; k < checkers; k++) {
+            if (screens[k] != from && !has(mask, k, to)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    //every piece of side byRed that attacks the general on gsq, same scan as AttackDetector.isGeneralAttacked
+    //but collecting; returns how many, mask k = checker square + line squares (or horse leg), screens k = cannon screen
+    private static int findCheckers(ChessBoardModel model, int gsq, boolean byRed, long[] mask, int[] screens) {
+        int n = 0;
+        int row = gsq / 9, col = gsq % 9;
+        for (int d = 0; d < 4; d++) {
+            int r = row + ROW_STEP[d], c = col + COL_STEP[d];
+            int first = -1;
+            while (model.isValidPosition(r, c)) {
+                AbstractPiece q = model.getPieceAt(r, c);
+                int sq = square(r, c);
+                r += ROW_STEP[d];
+                c += COL_STEP[d];
+                if (q == null) {
+                    continue;
+                }
+                if (first < 0) {
+                    first = sq;
+                    if (q.isRed() == byRed) {
+                        int type = q.getType();
+                        if (type == PieceType.CHARIOT) {
+                            n = addLine(mask, screens, n, gsq, sq, true, -1);
+                        } else if (type == PieceType.GENERAL && COL_STEP[d] == 0) {
+                            n = addLine(mask, screens, n, gsq, sq, false, -1);//the general itself can't be taken
+                        }
+                    }
+                } else {
+                    if (q.isRed() == byRed && q.getType() == PieceType.CANNON) {
+                        n = addLine(mask, screens, n, gsq, sq, true, first);
+                    }
+                    break;
+                }
+            }
+        }
+
+        int[] horses = HORSE_ATTACKERS[gsq];
+        int[] legs = HORSE_ATTACKER_LEGS[gsq];
+        for (int i = 0; i < horses.length; i++) {
+            AbstractPiece q = model.getPieceAt(horses[i] / 9, horses[i] % 9);
+            if (q != null && q.isRed() == byRed && q.getType() == PieceType.HORSE
+                    && model.getPieceAt(legs[i] / 9, legs[i] % 9) == null) {
+                mask[2 * n] = mask[2 * n + 1] = 0;
+                add(mask, n, horses[i]);
+                add(mask, n, legs[i]);
+                screens[n++] = -1;
+            }
+        }
+        for (int s : SOLDIER_ATTACKERS[byRed ? 0 : 1][gsq]) {
+            AbstractPiece q = model.getPieceAt(s / 9, s % 9);
+            if (q != null && q.isRed() == byRed && q.getType() == PieceType.SOLDIER) {
+                mask[2 * n] = mask[2 * n + 1] = 0;
+                add(mask, n, s);
+                screens[n++] = -1;
+            }
+        }
+        return n;
+    }
+
+    //checker on a line: the squares between it and the general (a cannon's screen included, taking it works too)
+    private static int addLine(long[] mask, int[] screens, int n, int gsq, int sq, boolean capturable, int screen) {
+        mask[2 * n] = BETWEEN[2 * (gsq * SQUARES + sq)];
+        mask[2 * n + 1] = BETWEEN[2 * (gsq * SQUARES + sq) + 1];
+        if (capturable) {
+            add(mask, n, sq);
+        }
+        screens[n] = screen;
+        return n + 1;
+    }
+
+    private static void add(long[] mask, int k, int sq) {
+        mask[2 * k + (sq >>> 6)] |= 1L << (sq & 63);
+    }
+}
@@ -1,9 +1,8 @@
 package edu.sustech.xiangqi.model;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
-import java.util.Map;
-import java.util.HashMap;
 import java.io.*;//sv&load game state via file
 
 public class ChessBoardModel {
@@ -15,7 +14,15 @@ public class ChessBoardModel {
     private final List<AbstractPiece> pieces; // stores every pcs
     private static final int ROWS = 10;
     private static final int COLS = 9;
+    private final AbstractPiece[][] board = new AbstractPiece[ROWS][COLS];//square index, kept in sync with pieces so getPieceAt is O(1)
+    private final int[] rankOccupancy = new int[ROWS];//bit col set = occupied, for SlidingAttacks
+    private final int[] fileOccupancy = new int[COLS];//bit row set = occupied
+    private AbstractPiece redGeneral;//cached so check detection doesn't scan pieces
+    private AbstractPiece blackGeneral;
     private boolean redTurn = true;// true = red's turn, false = black's turn
+    private int halfmoveClock = 0;//plies since the last capture (FEN move counters)
+    private int fullmoveNumber = 1;//goes up after every black move
+    private GameClock clock = null;//null = untimed game; only the real game has one, search copies don't
 
     // last move for UI
     private int lastFromRow = -1;
@@ -30,12 +37,103 @@ public class ChessBoardModel {
     private String gameEndReason = null;
 
     //repetition
-    private final Map<String, Integer> repetitionCounts = new HashMap<>();//for threefold repetition, board position => nmbr of times seen
-    //hashmap= effcnt bt itung rep
+    private final RepetitionTable repetitionCounts = new RepetitionTable();//for threefold repetition, position key => nmbr of times seen
+    private long hash;//zobrist key of the current position, updated move by move
+    private int midgameScore;//PieceSquareTables sums, red minus black, updated move by move like the hash
+    private int endgameScore;
+    private int phase;//sum of PieceSquareTables.PHASE over the pieces on the board
+    private long materialKey;//piece counts, 4 bits per PieceType.index, see materialCount
+    private long soldierHash;//zobrist key of the soldiers alone (soldier structure cache)
+
+    //undo stack for makeMove/unmakeMove, parallel arrays so nothing is allocated per move
+    private static final int UNDO_CAPACITY = 512;
+    private static final long[] NO_HASHES = new long[0];//plies, grows only if a real game gets longer
+    private int undoTop = 0;
+    private int[] undoMoves = new int[UNDO_CAPACITY];
+    private AbstractPiece[] undoCaptured = new AbstractPiece[UNDO_CAPACITY];
+    private int[] undoCapturedIndex = new int[UNDO_CAPACITY];//where the captured piece sat in pieces
+    private int[] undoLastMove = new int[UNDO_CAPACITY];//previous last-move fields as an encoded move, -1 = none
+    private long[] undoHash = new long[UNDO_CAPACITY];
+    private long[] priorHashes = NO_HASHES;//game before the undo stack (a copy: the recent hashes of the original)
+    private int[] undoHalfmove = new int[UNDO_CAPACITY];
+
+    //scratch for the legality questions asked about this board (hasLegalMove, causesCheckmate, MoveGenerator.isLegal,
+    //CheckEvasion ...), so asking allocates nothing; like the undo stack it belongs to the board's one thread
+    //none of the users holds a buffer while calling another user of the same buffer
+    final PinInfo scratchPins = new PinInfo();
+    final int[] scratchMoves = new int[MoveGenerator.MAX_MOVES];
+    final long[] evasionMask = new long[CheckEvasion.MAX_CHECKERS * 2];
+    final int[] evasionScreens = new int[CheckEvasion.MAX_CHECKERS];
 
     public ChessBoardModel() {
         pieces = new ArrayList<>();// create the list
         initializePieces();// place all pieces in starting positions
+        rebuildBoard();
+    }
+
+    //set up an arbitrary position (tools, analysis), the pieces are used as given
+    public ChessBoardModel(List<AbstractPiece> startPieces, boolean redToMove) {
+        pieces = new ArrayList<>(startPieces);
+        redTurn = redToMove;
+        rebuildBoard();
+    }
+
+    //independent copy of the current position (own piece objects, no undo stack), e.g. one per search thread
+    //the hashes back to the last capture come along, so a search on the copy sees repetitions of the game
+    public ChessBoardModel(ChessBoardModel other) {
+        pieces = new ArrayList<>(other.pieces.size());
+        for (AbstractPiece p : other.pieces) {
+            pieces.add(createPiece(PieceType.code(p.getType()), p.getRow(), p.getCol(), p.isRed()));
+        }
+        redTurn = other.redTurn;
+        halfmoveClock = other.halfmoveClock;
+        fullmoveNumber = other.fullmoveNumber;
+        lastFromRow = other.lastFromRow;//the engine looks at the last move (recaptures)
+        lastFromCol = other.lastFromCol;
+        lastToRow = other.lastToRow;
+        lastToCol = other.lastToCol;
+        hasLastMove = other.hasLastMove;
+        priorHashes = other.getRecentHashes();
+        rebuildBoard();
+    }
+
+    //replace the whole position, e.g. for tools that walk through many positions (endgame table generator);
+    //history (undo stack, move list, repetition counts), move counters and the last move are reset
+    public void setPosition(List<AbstractPiece> newPieces, boolean redToMove) {
+        pieces.clear();
+        pieces.addAll(newPieces);
+        redTurn = redToMove;
+        undoTop = 0;
+        priorHashes = NO_HASHES;
+        moveHistory.clear();
+        repetitionCounts.clear();//counts of the previous position must not carry over to this one
+        halfmoveClock = 0;
+        fullmoveNumber = 1;
+        lastFromRow = lastFromCol = lastToRow = lastToCol = -1;
+        hasLastMove = false;
+        rebuildBoard();
+    }
+
+    //build a piece from its save-file letter (K A E H R C P), null for an unknown letter
+    public static AbstractPiece createPiece(char code, int row, int col, boolean isRed) {
+        switch (code) {
+            case 'K':
+                return new GeneralPiece(isRed ? "帅" : "将", row, col, isRed);
+            case 'A':
+                return new AdvisorPiece(isRed ? "仕" : "士", row, col, isRed);
+            case 'E':
+                return new ElephantPiece(isRed ? "相" : "象", row, col, isRed);
+            case 'H':
+                return new HorsePiece("马", row, col, isRed);
+            case 'R':
+                return new ChariotPiece("车", row, col, isRed);
+            case 'C':
+                return new CannonPiece("炮", row, col, isRed);
+            case 'P':
+                return new SoldierPiece(isRed ? "兵" : "卒", row, col, isRed);
+            default:
+                return null;
+        }
     }
 
     private void initializePieces() {
@@ -109,12 +207,116 @@ public class ChessBoardModel {
 
 
     public AbstractPiece getPieceAt(int row, int col) {
-        for (AbstractPiece piece : pieces) {// loop through all pieces
-            if (piece.getRow() == row && piece.getCol() == col) {
-                return piece;// found a piece at this position
+        if (!isValidPosition(row, col)) {
+            return null;// off board, nothing there
+        }
+        return board[row][col];
+    }
+
+    //refill the square index from the pieces list (after init / load)
+    private void rebuildBoard() {
+        for (int r = 0; r < ROWS; r++) {
+            for (int c = 0; c < COLS; c++) {
+                board[r][c] = null;
             }
         }
-        return null;
+        Arrays.fill(rankOccupancy, 0);
+        Arrays.fill(fileOccupancy, 0);
+        hash = redTurn ? 0L : Zobrist.BLACK_TO_MOVE;
+        midgameScore = 0;
+        endgameScore = 0;
+        phase = 0;
+        materialKey = 0L;
+        soldierHash = 0L;
+        redGeneral = null;
+        blackGeneral = null;
+        for (AbstractPiece p : pieces) {
+            board[p.getRow()][p.getCol()] = p;
+            occupy(p.getRow(), p.getCol());
+            hash ^= Zobrist.piece(p, p.getRow(), p.getCol());
+            addScore(p, p.getRow(), p.getCol(), 1);
+            phase += PieceSquareTables.PHASE[p.getType()];
+            materialKey += materialUnit(p);
+            if (p.getType() == PieceType.SOLDIER) {
+                soldierHash ^= Zobrist.piece(p, p.getRow(), p.getCol());
+            }
+            if (p instanceof GeneralPiece) {
+                if (p.isRed()) {
+                    redGeneral = p;
+                } else {
+                    blackGeneral = p;
+                }
+            }
+        }
+    }
+
+    //64-bit key of the current position (pieces + side to move)
+    public long getHash() {
+        return hash;
+    }
+
+    //material + piece-square sums (red minus black) and game phase, see PieceSquareTables
+    public int getMidgameScore() {
+        return midgameScore;
+    }
+
+    public int getEndgameScore() {
+        return endgameScore;
+    }
+
+    public int getPhase() {
+        return phase;
+    }
+
+    //piece counts of both sides packed into one long, equal keys = equal material
+    public long getMaterialKey() {
+        return materialKey;
+    }
+
+    //how many pieces of a type and color a material key holds
+    public static int materialCount(long materialKey, int type, boolean isRed) {
+        return (int) (materialKey >>> (4 * PieceType.index(type, isRed)) & 15);
+    }
+
+    public long getSoldierHash() {
+        return soldierHash;
+    }
+
+    private static long materialUnit(AbstractPiece p) {
+        return 1L << (4 * PieceType.index(p.getType(), p.isRed()));
+    }
+
+    //sign 1 puts the piece's value on (row, col) into the sums, -1 takes it out
+    private void addScore(AbstractPiece p, int row, int col, int sign) {
+        int sq = row * COLS + col;
+        int type = p.getType();
+        int s = p.isRed() ? sign : -sign;
+        midgameScore += s * PieceSquareTables.mg(type, p.isRed(), sq);
+        endgameScore += s * PieceSquareTables.eg(type, p.isRed(), sq);
+    }
+
+    //move a piece on the square index and on the piece itself, the caller handles captures
+    private void relocate(AbstractPiece piece, int toR, int toC) {
+        board[piece.getRow()][piece.getCol()] = null;
+        rankOccupancy[piece.getRow()] &= ~(1 << piece.getCol());
+        fileOccupancy[piece.getCol()] &= ~(1 << piece.getRow());
+        piece.moveTo(toR, toC);
+        board[toR][toC] = piece;
+        occupy(toR, toC);
+    }
+
+    private void occupy(int row, int col) {
+        rankOccupancy[row] |= 1 << col;
+        fileOccupancy[col] |= 1 << row;
+    }
+
+    //occupied cols of a rank / rows of a file as bits, the index into SlidingAttacks
+    public int getRankOccupancy(int row) {
+        return rankOccupancy[row];
+    }
+
+    public int getFileOccupancy(int col) {
+        return fileOccupancy[col];
     }
 
     public AbstractPiece findOtherGeneral(AbstractPiece current) {
@@ -139,50 +341,349 @@ public class ChessBoardModel {
 
     // find the general piece for a side (true = red, false = black)
     public AbstractPiece findGeneral(boolean isRed) {
-        for (AbstractPiece p : pieces){
-            if (p instanceof GeneralPiece && p.isRed() == isRed) {
-                return p;
-            }
-        }
-        return null;
+        return isRed ? redGeneral : blackGeneral;
     }
 
-    //check if given sides general under attk
+    //check if given sides general under attk (also counts two generals facing on an open file)
     public boolean generalInCheck(boolean isRed) {
         AbstractPiece g = findGeneral(isRed);
         if (g == null) {
             return false;
         }
-        int gr = g.getRow();
-        int gc = g.getCol();
+        //look outward from the general instead of asking every enemy piece, fixed cost per call
+        return AttackDetector.isGeneralAttacked(this, g.getRow(), g.getCol(), !isRed);
+    }
+    //sim helper
+    private boolean simulateMoveCheck(AbstractPiece mover, int toR, int toC, boolean checkRed) {
+        makeMove(encodeMove(mover.getRow(), mover.getCol(), toR, toC));// sim move (and capture)
+        boolean result = generalInCheck(checkRed);//sim checked
+        unmakeMove();// revert simulation
+        return result;
+    }
 
-        for (AbstractPiece p : pieces) {
-            if (p.isRed() == isRed) {
-                continue;// skip same side
+    //MAKE / UNMAKE
+    //compact move: from square | to square << 7, square = row * 9 + col (0 is never a real move)
+    public static int encodeMove(int fromRow, int fromCol, int toRow, int toCol) {
+        return encodeMove(fromRow * COLS + fromCol, toRow * COLS + toCol);
+    }
+
+    public static int encodeMove(int fromSquare, int toSquare) {
+        return fromSquare | (toSquare << 7);
+    }
+
+    public static int moveFrom(int move) {
+        return move & 0x7F;
+    }
+
+    public static int moveTo(int move) {
+        return (move >>> 7) & 0x7F;
+    }
+
+    //ICCS coordinates like "h2e2": files a-i from left to right, ranks 0-9 from red's side (row 9 = rank 0)
+    public static String toIccs(int move) {
+        int from = moveFrom(move), to = moveTo(move);
+        return new String(new char[]{
+                (char) ('a' + from % COLS), (char) ('0' + (ROWS - 1 - from / COLS)),
+                (char) ('a' + to % COLS), (char) ('0' + (ROWS - 1 - to / COLS))});
+    }
+
+    //Xiangqi FEN, e.g. "rnbakabnr/9/1c5c1/p1p1p1p1p/9/9/P1P1P1P1P/1C5C1/9/RNBAKABNR w - - 0 1"
+    //ranks from black's back rank down, red upper case; K A B/E N/H R C P; side w (or r) / b; the two move counters
+    //are optional. Walks the text once, no split / substring, throws IllegalArgumentException on malformed input
+    public static ChessBoardModel fromFen(CharSequence fen) {
+        List<AbstractPiece> placed = new ArrayList<>(32);
+        int n = fen.length();
+        int i = skipSpaces(fen, 0);
+        int row = 0, col = 0;
+        for (; i < n && fen.charAt(i) != ' '; i++) {
+            char ch = fen.charAt(i);
+            if (ch == '/') {
+                if (col != COLS) {
+                    throw new IllegalArgumentException("FEN rank " + row + " has " + col + " files: " + fen);
+                }
+                row++;
+                col = 0;
+            } else if (ch >= '1' && ch <= '9') {
+                col += ch - '0';
+            } else {
+                char code = fenToCode(Character.toUpperCase(ch));
+                if (code == 0 || row >= ROWS || col >= COLS) {
+                    throw new IllegalArgumentException("bad FEN at " + i + ": " + fen);
+                }
+                placed.add(createPiece(code, row, col, ch < 'a'));
+                col++;
             }
-            if (p.canMoveTo(gr, gc, this)) {
-                return true;// enemy can capture general
+            if (col > COLS) {
+                throw new IllegalArgumentException("FEN rank " + row + " is too long: " + fen);
             }
         }
-        return false;
+        if (row != ROWS - 1 || col != COLS) {
+            throw new IllegalArgumentException("FEN board needs 10 ranks of 9 files: " + fen);
+        }
+
+        boolean redToMove = true;
+        i = skipSpaces(fen, i);
+        if (i < n) {
+            char side = fen.charAt(i++);
+            if (side == 'b' || side == 'B') {
+                redToMove = false;
+            } else if (side != 'w' && side != 'W' && side != 'r' && side != 'R') {
+                throw new IllegalArgumentException("bad side to move in FEN: " + fen);
+            }
+        }
+        //castling / en passant fields are always "-" in Xiangqi, skip anything that isn't a number
+        int halfmoves = 0;
+        int fullmoves = 1;
+        for (int k = 0; k < 2; k++) {
+            i = skipSpaces(fen, i);
+            while (i < n && fen.charAt(i) == '-') {
+                i = skipSpaces(fen, i + 1);
+            }
+            if (i >= n) {
+                break;
+            }
+            int value = 0;
+            int start = i;
+            for (; i < n && fen.charAt(i) >= '0' && fen.charAt(i) <= '9'; i++) {
+                value = value * 10 + (fen.charAt(i) - '0');
+            }
+            if (i == start) {
+                throw new IllegalArgumentException("bad move counter in FEN: " + fen);
+            }
+            if (k == 0) {
+                halfmoves = value;
+            } else {
+                fullmoves = Math.max(1, value);
+            }
+        }
+
+        ChessBoardModel model = new ChessBoardModel(placed, redToMove);
+        model.halfmoveClock = halfmoves;
+        model.fullmoveNumber = fullmoves;
+        return model;
     }
-    //sim helper
-    private boolean simulateMoveCheck(AbstractPiece mover, int toR, int toC, boolean checkRed) {
-        int fromR = mover.getRow(), fromC = mover.getCol();
-        AbstractPiece captured = getPieceAt(toR, toC);
+
+    public String toFen() {
+        StringBuilder sb = new StringBuilder(90);
+        for (int r = 0; r < ROWS; r++) {
+            int empty = 0;
+            for (int c = 0; c < COLS; c++) {
+                AbstractPiece p = board[r][c];
+                if (p == null) {
+                    empty++;
+                    continue;
+                }
+                if (empty > 0) {
+                    sb.append((char) ('0' + empty));
+                    empty = 0;
+                }
+                char code = FEN_CODES[p.getType()];
+                sb.append(p.isRed() ? code : Character.toLowerCase(code));
+            }
+            if (empty > 0) {
+                sb.append((char) ('0' + empty));
+            }
+            if (r < ROWS - 1) {
+                sb.append('/');
+            }
+        }
+        sb.append(redTurn ? " w - - " : " b - - ").append(halfmoveClock).append(' ').append(fullmoveNumber);
+        return sb.toString();
+    }
+
+    public int getHalfmoveClock() {
+        return halfmoveClock;
+    }
+
+    public int getFullmoveNumber() {
+        return fullmoveNumber;
+    }
+
+    private static final char[] FEN_CODES = {'K', 'A', 'B', 'N', 'R', 'C', 'P'};//by PieceType id
+
+    //FEN letter (upper case) -> createPiece letter, 0 if unknown; E and H are accepted as well
+    private static char fenToCode(char ch) {
+        switch (ch) {
+            case 'B':
+                return 'E';
+            case 'N':
+                return 'H';
+            case 'K':
+            case 'A':
+            case 'E':
+            case 'H':
+            case 'R':
+            case 'C':
+            case 'P':
+                return ch;
+            default:
+                return 0;
+        }
+    }
+
+    private static int skipSpaces(CharSequence text, int i) {
+        while (i < text.length() && text.charAt(i) == ' ') {
+            i++;
+        }
+        return i;
+    }
+
+    //ICCS text (e.g. "h2e2") back to an encoded move, 0 if it isn't four in-range characters
+    public static int fromIccs(CharSequence text) {
+        if (text == null || text.length() != 4) {
+            return 0;
+        }
+        int fc = Character.toLowerCase(text.charAt(0)) - 'a', fr = ROWS - 1 - (text.charAt(1) - '0');
+        int tc = Character.toLowerCase(text.charAt(2)) - 'a', tr = ROWS - 1 - (text.charAt(3) - '0');
+        if (fc < 0 || fc >= COLS || tc < 0 || tc >= COLS || fr < 0 || fr >= ROWS || tr < 0 || tr >= ROWS) {
+            return 0;
+        }
+        return encodeMove(fr, fc, tr, tc);
+    }
+
+    //play a move without any rule checks (callers make sure it is at least pseudo legal), switches the turn
+    public void makeMove(int move) {
+        int from = moveFrom(move), to = moveTo(move);
+        int fr = from / COLS, fc = from % COLS, tr = to / COLS, tc = to % COLS;
+        AbstractPiece mover = board[fr][fc];
+        AbstractPiece captured = board[tr][tc];
+
+        if (undoTop == undoMoves.length) {
+            growUndoStack();
+        }
+        undoMoves[undoTop] = move;
+        undoCaptured[undoTop] = captured;
+        undoCapturedIndex[undoTop] = -1;
+        undoLastMove[undoTop] = hasLastMove ? encodeMove(lastFromRow, lastFromCol, lastToRow, lastToCol) : -1;
+        undoHash[undoTop] = hash;
+        undoHalfmove[undoTop] = halfmoveClock;
+        halfmoveClock = captured != null ? 0 : halfmoveClock + 1;
+        if (!redTurn) {
+            fullmoveNumber++;
+        }
         if (captured != null) {
-            pieces.remove(captured);// sim capture
+            int index = pieces.indexOf(captured);
+            undoCapturedIndex[undoTop] = index;
+            pieces.remove(index);//remove by index, the slot is given back on unmake so order never changes
+            hash ^= Zobrist.piece(captured, tr, tc);
+            addScore(captured, tr, tc, -1);
+            phase -= PieceSquareTables.PHASE[captured.getType()];
+            materialKey -= materialUnit(captured);
+            if (captured.getType() == PieceType.SOLDIER) {
+                soldierHash ^= Zobrist.piece(captured, tr, tc);
+            }
+            setGeneral(captured, null);
         }
-        mover.moveTo(toR, toC);// sim move
+        undoTop++;
 
-        boolean result = generalInCheck(checkRed);//sim checked
+        hash ^= Zobrist.piece(mover, fr, fc) ^ Zobrist.piece(mover, tr, tc) ^ Zobrist.BLACK_TO_MOVE;
+        addScore(mover, fr, fc, -1);
+        addScore(mover, tr, tc, 1);
+        if (mover.getType() == PieceType.SOLDIER) {
+            soldierHash ^= Zobrist.piece(mover, fr, fc) ^ Zobrist.piece(mover, tr, tc);
+        }
+        relocate(mover, tr, tc);
+        redTurn = !redTurn;
+
+        lastFromRow = fr;
+        lastFromCol = fc;
+        lastToRow = tr;
+        lastToCol = tc;
+        hasLastMove = true;
+    }
 
-        // revert simulation
-        mover.moveTo(fromR, fromC);
+    //take back the last makeMove
+    public void unmakeMove() {
+        undoTop--;
+        int move = undoMoves[undoTop];
+        int from = moveFrom(move), to = moveTo(move);
+        int tr = to / COLS, tc = to % COLS;
+
+        AbstractPiece mover = board[tr][tc];
+        addScore(mover, tr, tc, -1);
+        addScore(mover, from / COLS, from % COLS, 1);
+        if (mover.getType() == PieceType.SOLDIER) {
+            soldierHash ^= Zobrist.piece(mover, tr, tc) ^ Zobrist.piece(mover, from / COLS, from % COLS);
+        }
+        relocate(mover, from / COLS, from % COLS);
+        AbstractPiece captured = undoCaptured[undoTop];
         if (captured != null) {
-            pieces.add(captured);// restore captured piece as before
+            pieces.add(undoCapturedIndex[undoTop], captured);
+            board[tr][tc] = captured;
+            occupy(tr, tc);
+            addScore(captured, tr, tc, 1);
+            phase += PieceSquareTables.PHASE[captured.getType()];
+            materialKey += materialUnit(captured);
+            if (captured.getType() == PieceType.SOLDIER) {
+                soldierHash ^= Zobrist.piece(captured, tr, tc);
+            }
+            setGeneral(captured, captured);
+            undoCaptured[undoTop] = null;//don't keep captured pieces alive from the stack
+        }
+        redTurn = !redTurn;
+        hash = undoHash[undoTop];
+        halfmoveClock = undoHalfmove[undoTop];
+        if (!redTurn) {
+            fullmoveNumber--;
+        }
+
+        int last = undoLastMove[undoTop];
+        hasLastMove = last != -1;
+        if (hasLastMove) {
+            lastFromRow = moveFrom(last) / COLS;
+            lastFromCol = moveFrom(last) % COLS;
+            lastToRow = moveTo(last) / COLS;
+            lastToCol = moveTo(last) % COLS;
+        } else {
+            lastFromRow = lastFromCol = lastToRow = lastToCol = -1;
+        }
+    }
+
+    //pass: only the side to move changes (search null move), undone by calling it again
+    public void makeNullMove() {
+        redTurn = !redTurn;
+        hash ^= Zobrist.BLACK_TO_MOVE;
+    }
+
+    public void unmakeNullMove() {
+        makeNullMove();
+    }
+
+    //keep the general cache right when a general is captured / put back
+    private void setGeneral(AbstractPiece piece, AbstractPiece value) {
+        if (piece instanceof GeneralPiece) {
+            if (piece.isRed()) {
+                redGeneral = value;
+            } else {
+                blackGeneral = value;
+            }
         }
-        return result;
+    }
+
+    //hashes of the positions before the current one back to the last capture (nothing older can come back), oldest
+    //first: the undo stack plus what a copy got from its original, limited by the halfmove clock
+    public long[] getRecentHashes() {
+        int own = Math.min(halfmoveClock, undoTop);
+        int prior = Math.min(halfmoveClock - own, priorHashes.length);
+        long[] recent = new long[prior + own];
+        System.arraycopy(priorHashes, priorHashes.length - prior, recent, 0, prior);
+        System.arraycopy(undoHash, undoTop - own, recent, prior, own);
+        return recent;
+    }
+
+    //number of moves that unmakeMove can still take back
+    public int getUndoDepth() {
+        return undoTop;
+    }
+
+    private void growUndoStack() {
+        int n = undoMoves.length * 2;
+        undoMoves = Arrays.copyOf(undoMoves, n);
+        undoCaptured = Arrays.copyOf(undoCaptured, n);
+        undoCapturedIndex = Arrays.copyOf(undoCapturedIndex, n);
+        undoLastMove = Arrays.copyOf(undoLastMove, n);
+        undoHash = Arrays.copyOf(undoHash, n);
+        undoHalfmove = Arrays.copyOf(undoHalfmove, n);
     }
 
     //illegal expose general
@@ -191,7 +692,9 @@ public class ChessBoardModel {
         if (mover == null) {
             return false;
         }
-        return simulateMoveCheck(mover, toR, toC, mover.isRed());// check sim move gen
+        //pins decide most moves without playing them, general moves and cannon screens are still simulated
+        scratchPins.compute(this, mover.isRed());
+        return !scratchPins.isLegal(this, encodeMove(fromR, fromC, toR, toC));
     }
 
 
@@ -210,67 +713,20 @@ public class ChessBoardModel {
             return false;
         }
         // apply simulated mover move
-        int origR = mover.getRow(), origC = mover.getCol();
-        AbstractPiece captured = getPieceAt(toR, toC);
-        if (captured != null) {
-            pieces.remove(captured);
-        }
-        mover.moveTo(toR, toC);
+        makeMove(encodeMove(fromR, fromC, toR, toC));
 
         boolean opponentIsRed = !mover.isRed();
-        boolean inCheck = generalInCheck(opponentIsRed);
-        boolean isMate = false;
-
-        if (inCheck) {
-            isMate = true;// assume mate until an escape is found
-
-            for (AbstractPiece enemy : new ArrayList<>(pieces)) {
-                if (enemy.isRed() != opponentIsRed) {
-                    continue;// skip pcs, only opps pieces
-                }
-                int er = enemy.getRow(), ec = enemy.getCol();//save orig coord
-                outer:// try all board squares as possbl moves
-                for (int r = 0; r < ROWS; r++) {
-                    for (int c = 0; c < COLS; c++) {
-                        if (!enemy.canMoveTo(r, c, this)) {
-                            continue;// not a legal piece move
-                        }
-                        // simulate enemy move
-                        AbstractPiece cap2 = getPieceAt(r, c);
-                        boolean removed = false;
-                        if (cap2 != null) {
-                            pieces.remove(cap2); removed = true; }
-                        enemy.moveTo(r, c);
-
-                        boolean stillInCheck = generalInCheck(opponentIsRed);//check opps gen still in check
-                        // undo sim move
-                        enemy.moveTo(er, ec);
-                        if (removed && cap2 != null) {
-                            pieces.add(cap2);
-                        }
-
-                        if (!stillInCheck) {
-                            isMate = false; break outer;
-                        }//found escape -> not mate
-                    }
-                }
-                if (!isMate) {
-                    break;
-                }
-            }
-        }
+        //only the evasions are tried (general steps, capturing / blocking the checker), not every reply
+        boolean isMate = generalInCheck(opponentIsRed) && !CheckEvasion.hasEvasion(this, opponentIsRed);
 
-        // undo sim mover move
-        mover.moveTo(origR, origC);
-        if (captured != null) {
-            pieces.add(captured);
-        }
+        unmakeMove();// undo sim mover move
 
-        return inCheck && isMate;//check+no escape moves
+        return isMate;//check+no escape moves
     }
 
     //THREEFOLD REPETITION HELPERS$$$
-    private String serializePosition() {
+    //readable 92-char dump of the board + side to move, for debugging (repetition itself uses the hash)
+    public String serializePosition() {
         StringBuilder sb = new StringBuilder(ROWS * COLS + 2);
 
         for (int r = 0; r < ROWS; r++) {
@@ -299,15 +755,11 @@ public class ChessBoardModel {
     }
 
     private int recordCurrentPosition() {//store the current position, increasing its repetition counter.
-        String key = serializePosition();
-        int count = repetitionCounts.getOrDefault(key, 0) + 1;
-        repetitionCounts.put(key, count);
-        return count;
+        return repetitionCounts.increment(hash);
     }
 
     public boolean isThreefoldRepetition() {//return true if the current position has happened at least 3 times.
-        String key = serializePosition();
-        return repetitionCounts.getOrDefault(key, 0) >= 3;
+        return repetitionCounts.get(hash) >= 3;
     }
 
     public void resetRepetitionCounts() {//reset the repetition data (call when starting a new game).
@@ -339,11 +791,28 @@ public class ChessBoardModel {
         endGame(result, "resign");
     }
 
+    //the side ran out of time on its clock
+    public void loseOnTime(boolean isRed) {
+        if (gameOver) {
+            return;
+        }
+        endGame(isRed ? "BLACK_WIN" : "RED_WIN", "time");
+    }
+
+    public GameClock getClock() {
+        return clock;
+    }
+
+    public void setClock(GameClock clock) {
+        this.clock = clock;
+    }
+
 
     //SAVE GAME
     public void saveGame(String filename) {
         try (PrintWriter out = new PrintWriter(new FileWriter(filename))) {
             out.println("# Xiangqi Save File");
+            out.println("# FEN " + toFen());//for reference only, the PIECE / TURN / CLOCK lines below are what gets loaded
 
             for (AbstractPiece p : pieces) {
                 String code;
@@ -375,6 +844,9 @@ public class ChessBoardModel {
                 out.println("PIECE " + code + " " + p.getRow() + " " + p.getCol() + " " + p.isRed());
             }
             out.println("TURN " + redTurn);//save whose turn it is
+            if (clock != null) {
+                out.println("CLOCK " + clock.toSaveString());//time left, so a timed game goes on where it stopped
+            }
         } catch (IOException e) {
             System.out.println("Error saving game: " + e.getMessage());
         }
@@ -385,6 +857,11 @@ public class ChessBoardModel {
         try (BufferedReader br = new BufferedReader(new FileReader(filename))) {
             pieces.clear();//clear current board
             moveHistory.clear();
+            undoTop = 0;//old moves can't be taken back on a loaded board
+            priorHashes = NO_HASHES;
+            halfmoveClock = 0;
+            fullmoveNumber = 1;
+            clock = null;//untimed unless the file has a CLOCK line
 
             String line;
             while ((line = br.readLine()) != null) {
@@ -400,30 +877,7 @@ public class ChessBoardModel {
                     int col = Integer.parseInt(arr[3]);
                     boolean isRed = Boolean.parseBoolean(arr[4]);
 
-                    AbstractPiece p = null;
-                    switch (code) {
-                        case "K":
-                            p = new GeneralPiece(isRed ? "帅" : "将", row, col, isRed);
-                            break;
-                        case "A":
-                            p = new AdvisorPiece(isRed ? "仕" : "士", row, col, isRed);
-                            break;
-                        case "E":
-                            p = new ElephantPiece(isRed ? "相" : "象", row, col, isRed);
-                            break;
-                        case "H":
-                            p = new HorsePiece("马", row, col, isRed);
-                            break;
-                        case "R":
-                            p = new ChariotPiece("车", row, col, isRed);
-                            break;
-                        case "C":
-                            p = new CannonPiece("炮", row, col, isRed);
-                            break;
-                        case "P":
-                            p = new SoldierPiece(isRed ? "兵" : "卒", row, col, isRed);
-                            break;
-                    }
+                    AbstractPiece p = code.length() == 1 ? createPiece(code.charAt(0), row, col, isRed) : null;
 
                     if (p != null) {
                         pieces.add(p);
@@ -432,10 +886,23 @@ public class ChessBoardModel {
                 else if (arr[0].equals("TURN")) {
                     redTurn = Boolean.parseBoolean(arr[1]);
                 }
+                else if (arr[0].equals("CLOCK")) {
+                    clock = GameClock.fromSaveString(line.substring(6));
+                }
+                else if (arr[0].equals("FEN")) {//a whole position in one line, e.g. written by hand
+                    ChessBoardModel setup = fromFen(line.substring(4));
+                    pieces.clear();
+                    pieces.addAll(setup.pieces);
+                    redTurn = setup.redTurn;
+                    halfmoveClock = setup.halfmoveClock;
+                    fullmoveNumber = setup.fullmoveNumber;
+                }
             }
+            rebuildBoard();
             repetitionCounts.clear();
             System.out.println("Game loaded successfully.");
         } catch (Exception e) {
+            rebuildBoard();//keep the square index matching whatever got loaded
             System.out.println("Error loading game: " + e.getMessage());
             System.out.println("Save file may be corrupted.");
         }
@@ -452,36 +919,18 @@ public class ChessBoardModel {
 
     // STALEMATE + ENDGAME CODE
     public boolean hasLegalMove(boolean isRed) {
-        for (AbstractPiece p : new ArrayList<>(pieces)) {
-            if (p == null) {
-                continue;
-            }
-            if (p.isRed() != isRed) {
-                continue;//only consider pieces of the side we're checking
-            }
-
-            int sr = p.getRow();
-            int sc = p.getCol();
-
-            //try every board square as a possible destination
-            for (int tr = 0; tr < ROWS; tr++) {
-                for (int tc = 0; tc < COLS; tc++) {
-                    //1)piece-specific movement rules
-                    if (!p.canMoveTo(tr, tc, this)) {
-                        continue;
-                    }
-                    //2) can't capture your own piece
-                    AbstractPiece target = getPieceAt(tr, tc);
-                    if (target != null && target.isRed() == isRed) {
-                        continue;
-                    }
-                    //3)if this move would leave our own general in check, it's illegal.
-                    if (moveLeavesOwnGeneralInCheck(sr, sc, tr, tc)) {
-                        continue;
-                    }
-                    //all checks passed -> found a legal move
-                    return true;
-                }
+        PinInfo pins = scratchPins;
+        pins.compute(this, isRed);
+        if (pins.isInCheck()) {
+            return CheckEvasion.hasEvasion(this, isRed);
+        }
+        //1)+2) the generator already applies the piece rules and skips own-piece captures
+        int[] moves = scratchMoves;
+        int count = MoveGenerator.generate(this, isRed, moves, 0);
+        for (int i = 0; i < count; i++) {
+            //3)if this move would leave our own general in check, it's illegal (pins, see PinInfo)
+            if (pins.isLegal(this, moves[i])) {
+                return true;//all checks passed -> found a legal move
             }
         }
         //if no legal move found
@@ -528,9 +977,22 @@ public class ChessBoardModel {
         if (isThreefoldRepetition()) {
             return "DRAW";
         }
+
+        //nobody can win any more: no piece left that can give check, or the endgame tables say draw
+        if (isTheoreticalDraw()) {
+            return "DRAW";
+        }
         return "NONE";
     }
 
+    public boolean isTheoreticalDraw() {
+        Tablebase tb = Tablebase.getDefault();
+        if (tb != null) {
+            return tb.probe(this) == Tablebase.DRAW;
+        }
+        return !Tablebase.hasAttackers(getMaterialKey(), true) && !Tablebase.hasAttackers(getMaterialKey(), false);
+    }
+
     public boolean movePiece(AbstractPiece piece, int newRow, int newCol) {
 //     Main move method used by UI
 //     checks:
@@ -568,37 +1030,27 @@ public class ChessBoardModel {
         //remember origin for check/checkmate checks ltr
         int origRow = piece.getRow();
         int origCol = piece.getCol();
-        //record last-move for UI
-        lastFromRow = origRow;
-        lastFromCol = origCol;
         //simulate whether this move would cause check/checkmate before apply to real board
         //(causesCheck / causesCheckmate expect the mover to still be at (origRow,origCol))
         boolean causedCheck = causesCheck(origRow, origCol, newRow, newCol);
         boolean causedCheckmate = causesCheckmate(origRow, origCol, newRow, newCol);
         //now perform the actual capture and move (apply to the real board)
-        if (target != null) {
-            pieces.remove(target);
+        //this also records the last move for the UI and switches the turn, and stays on the undo stack
+        makeMove(encodeMove(origRow, origCol, newRow, newCol));
+        if (clock != null) {
+            clock.punch();
         }
-        piece.moveTo(newRow, newCol);
 
         //update last-move fields
         lastMoveCausedCheck = causedCheck;
         lastMoveCausedCheckmate = causedCheckmate;
 
-        //record last-move "to" for UI
-        lastToRow = newRow;
-        lastToCol = newCol;
-        hasLastMove = true;
-
         boolean wasCapture = (target != null);
 
         moveHistory.add(new Move(piece.isRed(), piece.getName(), origRow, origCol, newRow, newCol, wasCapture, lastMoveCausedCheck, lastMoveCausedCheckmate));
 
         System.out.println("[MOVE] " + (piece.isRed() ? "Red " : "Black ") + piece.getName() + " (" + origRow + "," + origCol + ") -> (" + newRow + "," + newCol + ")");
 
-        //switch turn
-        redTurn = !redTurn;
-
         //record repetition after switching turn
         int occurrences = recordCurrentPosition();
         if (occurrences >= 3) {
@@ -0,0 +1,159 @@
+package edu.sustech.xiangqi.model;
+
+//chess clock for both sides, two kinds of time control:
+//- base time plus an increment that is added after every move (Fischer)
+//- base time followed by byoyomi: once the base time is gone every move has to be made within one period,
+//  a move that runs over uses up periods, running out of periods loses
+//times are milliseconds (System.currentTimeMillis), ChessBoardModel punches the clock after every real move
+public class GameClock {
+    private final long increment;
+    private final long byoyomi;//period length, 0 = no byoyomi
+    private final long[] mainTime = new long[2];//base time left, [0] red, [1] black
+    private final int[] periods = new int[2];//byoyomi periods left
+    private boolean running = false;
+    private boolean redRunning = true;//side whose time is counting down (even while paused)
+    private long turnStart;//when the clock was last started / resumed
+    private long spentBeforePause = 0;//time the running side already used this move before a pause
+
+    private GameClock(long base, long increment, long byoyomi, int periods) {
+        this.increment = increment;
+        this.byoyomi = byoyomi;
+        mainTime[0] = mainTime[1] = base;
+        this.periods[0] = this.periods[1] = byoyomi > 0 ? Math.max(1, periods) : 0;
+    }
+
+    public static GameClock fischer(long baseMillis, long incrementMillis) {
+        return new GameClock(baseMillis, incrementMillis, 0, 0);
+    }
+
+    public static GameClock byoyomi(long baseMillis, long periodMillis, int periods) {
+        return new GameClock(baseMillis, 0, periodMillis, periods);
+    }
+
+    //start counting for the side to move
+    public void start(boolean redToMove) {
+        redRunning = redToMove;
+        spentBeforePause = 0;
+        turnStart = System.currentTimeMillis();
+        running = true;
+    }
+
+    public void pause() {
+        if (running) {
+            spentBeforePause += System.currentTimeMillis() - turnStart;
+            running = false;
+        }
+    }
+
+    public void resume() {
+        if (!running) {
+            turnStart = System.currentTimeMillis();
+            running = true;
+        }
+    }
+
+    //the running side finished its move: charge the time, add the increment / use up periods, switch sides
+    public void punch() {
+        int i = redRunning ? 0 : 1;
+        long left = mainTime[i] - spent();
+        if (left < 0) {
+            if (byoyomi > 0) {
+                periods[i] = Math.max(0, periods[i] - (int) (-left / byoyomi));//a move inside a period costs nothing
+            }
+            left = 0;
+        }
+        mainTime[i] = left + increment;
+        redRunning = !redRunning;
+        spentBeforePause = 0;
+        turnStart = System.currentTimeMillis();
+    }
+
+    //time the side can still use on its current / next move: base time, or what's left of the current period
+    //0 means the side has lost on time
+    public long getRemaining(boolean isRed) {
+        int i = isRed ? 0 : 1;
+        long left = mainTime[i] - (isRed == redRunning ? spent() : 0);
+        if (left > 0) {
+            return left;
+        }
+        if (byoyomi == 0 || -left / byoyomi >= periods[i]) {
+            return 0;
+        }
+        return byoyomi - (-left % byoyomi);
+    }
+
+    //base time left, 0 once in byoyomi
+    public long getMainTime(boolean isRed) {
+        return Math.max(0, mainTime[isRed ? 0 : 1] - (isRed == redRunning ? spent() : 0));
+    }
+
+    public int getPeriods(boolean isRed) {
+        return periods[isRed ? 0 : 1];
+    }
+
+    public boolean isFlagged(boolean isRed) {
+        return getRemaining(isRed) == 0;
+    }
+
+    public long getIncrement() {
+        return increment;
+    }
+
+    public long getByoyomi() {
+        return byoyomi;
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    public boolean isRedRunning() {
+        return redRunning;
+    }
+
+    //CLOCK line of the save file: base time and periods of both sides as they stand now (the running side's current
+    //move charged, without an increment), then increment and period length
+    public String toSaveString() {
+        long[] main = new long[2];
+        int[] left = new int[2];
+        for (int i = 0; i < 2; i++) {
+            long t = mainTime[i] - ((i == 0) == redRunning ? spent() : 0);
+            left[i] = periods[i];
+            if (t < 0) {
+                if (byoyomi > 0) {
+                    left[i] = Math.max(0, periods[i] - (int) (-t / byoyomi));
+                }
+                t = 0;
+            }
+            main[i] = t;
+        }
+        return main[0] + " " + main[1] + " " + left[0] + " " + left[1] + " " + increment + " " + byoyomi;
+    }
+
+    //back from toSaveString, stopped; start() it for the side to move
+    public static GameClock fromSaveString(String line) {
+        String[] f = line.trim().split(" ");
+        GameClock clock = new GameClock(0, Long.parseLong(f[4]), Long.parseLong(f[5]), 0);
+        clock.mainTime[0] = Long.parseLong(f[0]);
+        clock.mainTime[1] = Long.parseLong(f[1]);
+        clock.periods[0] = Integer.parseInt(f[2]);
+        clock.periods[1] = Integer.parseInt(f[3]);
+        return clock;
+    }
+
+    private long spent() {
+        return spentBeforePause + (running ? System.currentTimeMillis() - turnStart : 0);
+    }
+
+    //m:ss, or h:mm:ss for long games; tenths under 10 seconds
+    public static String format(long millis) {
+        long seconds = millis / 1000;
+        if (millis < 10_000) {
+            return String.format("0:%02d.%d", seconds, millis % 1000 / 100);
+        }
+        if (seconds >= 3600) {
+            return String.format("%d:%02d:%02d", seconds / 3600, seconds / 60 % 60, seconds % 60);
+        }
+        return String.format("%d:%02d", seconds / 60, seconds % 60);
+    }
+}
@@ -6,6 +6,11 @@ public class GeneralPiece extends AbstractPiece {   //inherits variable and meth
         super(name, row, col, isRed);       // call the parent constructor and set initial position, name, and color
     }
 
+    @Override
+    public int getType() {
+        return PieceType.GENERAL;
+    }
+
     @Override
     public boolean canMoveTo(int targetRow, int targetCol, ChessBoardModel model) {
         int currentRow = getRow();
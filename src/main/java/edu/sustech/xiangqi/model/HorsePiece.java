@@ -5,6 +5,11 @@ public class HorsePiece extends AbstractPiece {
         super(name, row, col, isRed);
     }
 
+    @Override
+    public int getType() {
+        return PieceType.HORSE;
+    }
+
     @Override
     public boolean canMoveTo(int targetRow, int targetCol, ChessBoardModel model) {
         int currentRow = getRow();
@@ -0,0 +1,186 @@
+package edu.sustech.xiangqi.model;
+
+import java.util.List;
+
+import static edu.sustech.xiangqi.model.AttackTables.*;
+
+//walks each piece's own targets (rays, jumps, palace / soldier steps) instead of asking canMoveTo for all 90 squares
+//moves are written into a caller supplied int[] as ChessBoardModel.encodeMove values (from | to << 7)
+//output matches canMoveTo minus captures of own pieces, so canMoveTo stays usable as the reference
+public final class MoveGenerator {
+    public static final int MAX_MOVES = 128;//upper bound for one side in any position
+    public static final int MAX_PIECE_MOVES = 17;//a chariot or cannon in the middle of an empty board
+
+    private MoveGenerator() {
+    }
+
+    //all pseudo legal moves of one side, written from offset on, returns the offset after the last move
+    public static int generate(ChessBoardModel model, boolean isRed, int[] moves, int offset) {
+        List<AbstractPiece> pieces = model.getPieces();
+        for (int i = 0; i < pieces.size(); i++) {
+            AbstractPiece p = pieces.get(i);
+            if (p.isRed() == isRed) {
+                offset = generatePiece(model, p, moves, offset);
+            }
+        }
+        return offset;
+    }
+
+    //only the moves that don't leave the mover's own general in check (in check: CheckEvasion's short list)
+    public static int generateLegal(ChessBoardModel model, boolean isRed, int[] moves, int offset) {
+        PinInfo pins = model.scratchPins;
+        pins.compute(model, isRed);
+        if (pins.isInCheck()) {
+            return CheckEvasion.generateLegal(model, isRed, moves, offset);
+        }
+        int end = generate(model, isRed, moves, offset);
+        int n = offset;
+        for (int i = offset; i < end; i++) {
+            if (pins.isLegal(model, moves[i])) {
+                moves[n++] = moves[i];
+            }
+        }
+        return n;
+    }
+
+    //would generate() produce this move for side isRed? used for moves remembered from other positions
+    //(hash move, killers) that may not fit the current board at all
+    public static boolean isPseudoLegal(ChessBoardModel model, int move, boolean isRed) {
+        int from = ChessBoardModel.moveFrom(move), to = ChessBoardModel.moveTo(move);
+        if (move == 0 || from >= SQUARES || to >= SQUARES || from == to) {
+            return false;
+        }
+        AbstractPiece p = model.getPieceAt(from / 9, from % 9);
+        if (p == null || p.isRed() != isRed || isOwn(model, to, isRed)) {
+            return false;
+        }
+        return p.canMoveTo(to / 9, to % 9, model);
+    }
+
+    //fully legal for the side to move (pseudo legal and the own general not left in check), e.g. for moves read from text
+    public static boolean isLegal(ChessBoardModel model, int move) {
+        boolean side = model.isRedTurn();
+        if (!isPseudoLegal(model, move, side)) {
+            return false;
+        }
+        PinInfo pins = model.scratchPins;
+        pins.compute(model, side);
+        return pins.isLegal(model, move);
+    }
+
+    public static int generatePiece(ChessBoardModel model, AbstractPiece p, int[] moves, int offset) {
+        int r = p.getRow();
+        int c = p.getCol();
+        int from = square(r, c);
+        boolean red = p.isRed();
+        int color = red ? 0 : 1;
+
+        switch (p.getType()) {
+            case PieceType.GENERAL: {
+                AbstractPiece other = model.findGeneral(!red);
+                for (int to : GENERAL_TARGETS[color][from]) {
+                    if (isOwn(model, to, red) || facesGeneral(model, to, other)) {
+                        continue;
+                    }
+                    moves[offset++] = ChessBoardModel.encodeMove(from, to);
+                }
+                break;
+            }
+            case PieceType.ADVISOR:
+                offset = addSteps(model, from, red, ADVISOR_TARGETS[color][from], moves, offset);
+                break;
+            case PieceType.SOLDIER:
+                offset = addSteps(model, from, red, SOLDIER_TARGETS[color][from], moves, offset);
+                break;
+            case PieceType.ELEPHANT:
+                offset = addJumps(model, from, red, ELEPHANT_TARGETS[color][from], ELEPHANT_EYES[color][from], moves, offset);
+                break;
+            case PieceType.HORSE:
+                offset = addJumps(model, from, red, HORSE_TARGETS[from], HORSE_LEGS[from], moves, offset);
+                break;
+            case PieceType.CHARIOT: {
+                //one table lookup per line, own pieces among the blockers dropped
+                int rank = SlidingAttacks.rankChariot(c, model.getRankOccupancy(r));
+                int file = SlidingAttacks.fileChariot(r, model.getFileOccupancy(c));
+                offset = addRank(model, from, r, rank, red, true, moves, offset);
+                offset = addFile(model, from, c, file, red, true, moves, offset);
+                break;
+            }
+            case PieceType.CANNON: {
+                int rankOcc = model.getRankOccupancy(r), fileOcc = model.getFileOccupancy(c);
+                offset = addRank(model, from, r, SlidingAttacks.rankCannonQuiet(c, rankOcc), red, false, moves, offset);
+                offset = addFile(model, from, c, SlidingAttacks.fileCannonQuiet(r, fileOcc), red, false, moves, offset);
+                offset = addRank(model, from, r, SlidingAttacks.rankCannonCapture(c, rankOcc), red, true, moves, offset);
+                offset = addFile(model, from, c, SlidingAttacks.fileCannonCapture(r, fileOcc), red, true, moves, offset);
+                break;
+            }
+            default:
+                break;
+        }
+        return offset;
+    }
+
+    //moves to the cols set in a rank mask / the rows set in a file mask (from SlidingAttacks)
+    //checkOwn: the mask can contain pieces, drop the mover's own
+    private static int addRank(ChessBoardModel model, int from, int row, int cols, boolean red, boolean checkOwn, int[] moves, int offset) {
+        while (cols != 0) {
+            int to = square(row, Integer.numberOfTrailingZeros(cols));
+            cols &= cols - 1;
+            if (!checkOwn || !isOwn(model, to, red)) {
+                moves[offset++] = ChessBoardModel.encodeMove(from, to);
+            }
+        }
+        return offset;
+    }
+
+    private static int addFile(ChessBoardModel model, int from, int col, int rows, boolean red, boolean checkOwn, int[] moves, int offset) {
+        while (rows != 0) {
+            int to = square(Integer.numberOfTrailingZeros(rows), col);
+            rows &= rows - 1;
+            if (!checkOwn || !isOwn(model, to, red)) {
+                moves[offset++] = ChessBoardModel.encodeMove(from, to);
+            }
+        }
+        return offset;
+    }
+
+    private static int addSteps(ChessBoardModel model, int from, boolean red, int[] targets, int[] moves, int offset) {
+        for (int to : targets) {
+            if (!isOwn(model, to, red)) {
+                moves[offset++] = ChessBoardModel.encodeMove(from, to);
+            }
+        }
+        return offset;
+    }
+
+    //horse / elephant: target list with the leg or eye that has to be empty at the same index
+    private static int addJumps(ChessBoardModel model, int from, boolean red, int[] targets, int[] blockers, int[] moves, int offset) {
+        for (int i = 0; i < targets.length; i++) {
+            if (model.getPieceAt(blockers[i] / 9, blockers[i] % 9) == null && !isOwn(model, targets[i], red)) {
+                moves[offset++] = ChessBoardModel.encodeMove(from, targets[i]);
+            }
+        }
+        return offset;
+    }
+
+    private static boolean isOwn(ChessBoardModel model, int sq, boolean red) {
+        AbstractPiece q = model.getPieceAt(sq / 9, sq % 9);
+        return q != null && q.isRed() == red;
+    }
+
+    //same flying-general rule as GeneralPiece.canMoveTo: no stepping onto an open file facing the other general
+    private static boolean facesGeneral(ChessBoardModel model, int to, AbstractPiece other) {
+        if (other == null || other.getCol() != to % 9) {
+            return false;
+        }
+        int col = to % 9;
+        int start = Math.min(to / 9, other.getRow()) + 1;
+        int end = Math.max(to / 9, other.getRow());
+        for (int row = start; row < end; row++) {
+            if (model.getPieceAt(row, col) != null) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
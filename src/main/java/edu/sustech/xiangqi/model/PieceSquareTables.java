@@ -0,0 +1,188 @@
+package edu.sustech.xiangqi.model;
+
+//material + position value of every piece on every square, middlegame and endgame version
+//ChessBoardModel keeps the red-minus-black sums up to date move by move (like the Zobrist key),
+//the engine's Evaluator blends the two by the game phase
+//tables below are from red's point of view (row 0 = black's back rank, red starts on rows 6-9), black is mirrored
+public final class PieceSquareTables {
+    //indexed by PieceType id
+    public static final int[] MATERIAL_MG = {0, 200, 200, 400, 900, 450, 100};
+    public static final int[] MATERIAL_EG = {0, 220, 220, 450, 950, 400, 150};
+    //phase weight per piece, the game is "all middlegame" with every chariot, horse and cannon on the board
+    public static final int[] PHASE = {0, 0, 0, 1, 2, 1, 0};
+    public static final int MAX_PHASE = 2 * (2 * 1 + 2 * 2 + 2 * 1);
+
+    private static final int[] GENERAL_MG = {
+            0, 0, 0, 0, 0, 0, 0, 0, 0,
+            0, 0, 0, 0, 0, 0, 0, 0, 0,
+            0, 0, 0, 0, 0, 0, 0, 0, 0,
+            0, 0, 0, 0, 0, 0, 0, 0, 0,
+            0, 0, 0, 0, 0, 0, 0, 0, 0,
+            0, 0, 0, 0, 0, 0, 0, 0, 0,
+            0, 0, 0, 0, 0, 0, 0, 0, 0,
+            0, 0, 0, -20, -24, -20, 0, 0, 0,
+            0, 0, 0, -8, -10, -8, 0, 0, 0,
+            0, 0, 0, -2, 0, -2, 0, 0, 0,
+    };
+    private static final int[] GENERAL_EG = {
+            0, 0, 0, 0, 0, 0, 0, 0, 0,
+            0, 0, 0, 0, 0, 0, 0, 0, 0,
+            0, 0, 0, 0, 0, 0, 0, 0, 0,
+            0, 0, 0, 0, 0, 0, 0, 0, 0,
+            0, 0, 0, 0, 0, 0, 0, 0, 0,
+            0, 0, 0, 0, 0, 0, 0, 0, 0,
+            0, 0, 0, 0, 0, 0, 0, 0, 0,
+            0, 0, 0, -6, -4, -6, 0, 0, 0,
+            0, 0, 0, 2, 6, 2, 0, 0, 0,
+            0, 0, 0, 0, 4, 0, 0, 0, 0,
+    };
+    private static final int[] ADVISOR = {
+            0, 0, 0, 0, 0, 0, 0, 0, 0,
+            0, 0, 0, 0, 0, 0, 0, 0, 0,
+            0, 0, 0, 0, 0, 0, 0, 0, 0,
+            0, 0, 0, 0, 0, 0, 0, 0, 0,
+            0, 0, 0, 0, 0, 0, 0, 0, 0,
+            0, 0, 0, 0, 0, 0, 0, 0, 0,
+            0, 0, 0, 0, 0, 0, 0, 0, 0,
+            0, 0, 0, -2, 0, -2, 0, 0, 0,
+            0, 0, 0, 0, 6, 0, 0, 0, 0,
+            0, 0, 0, 0, 0, 0, 0, 0, 0,
+    };
+    private static final int[] ELEPHANT = {
+            0, 0, 0, 0, 0, 0, 0, 0, 0,
+            0, 0, 0, 0, 0, 0, 0, 0, 0,
+            0, 0, 0, 0, 0, 0, 0, 0, 0,
+            0, 0, 0, 0, 0, 0, 0, 0, 0,
+            0, 0, 0, 0, 0, 0, 0, 0, 0,
+            0, 0, -2, 0, 0, 0, -2, 0, 0,
+            0, 0, 0, 0, 0, 0, 0, 0, 0,
+            -4, 0, 0, 0, 6, 0, 0, 0, -4,
+            0, 0, 0, 0, 0, 0, 0, 0, 0,
+            0, 0, 0, 0, 0, 0, 0, 0, 0,
+    };
+    private static final int[] HORSE_MG = {
+            4, 8, 16, 12, 4, 12, 16, 8, 4,
+            4, 10, 28, 16, 8, 16, 28, 10, 4,
+            12, 14, 16, 20, 18, 20, 16, 14, 12,
+            8, 24, 18, 24, 20, 24, 18, 24, 8,
+            6, 16, 14, 18, 16, 18, 14, 16, 6,
+            4, 12, 16, 14, 12, 14, 16, 12, 4,
+            2, 6, 8, 6, 10, 6, 8, 6, 2,
+            4, 2, 8, 8, 4, 8, 8, 2, 4,
+            0, 2, 4, 4, -2, 4, 4, 2, 0,
+            0, -4, 0, 0, 0, 0, 0, -4, 0,
+    };
+    private static final int[] HORSE_EG = {
+            0, 4, 8, 8, 8, 8, 8, 4, 0,
+            4, 10, 14, 16, 16, 16, 14, 10, 4,
+            8, 14, 18, 20, 20, 20, 18, 14, 8,
+            8, 14, 18, 22, 22, 22, 18, 14, 8,
+            6, 12, 16, 20, 20, 20, 16, 12, 6,
+            4, 10, 14, 16, 16, 16, 14, 10, 4,
+            2, 6, 10, 12, 12, 12, 10, 6, 2,
+            0, 4, 6, 8, 8, 8, 6, 4, 0,
+            -2, 0, 2, 4, 4, 4, 2, 0, -2,
+            -4, -2, 0, 0, 0, 0, 0, -2, -4,
+    };
+    private static final int[] CHARIOT_MG = {
+            14, 14, 12, 18, 16, 18, 12, 14, 14,
+            16, 20, 18, 24, 26, 24, 18, 20, 16,
+            12, 12, 12, 18, 18, 18, 12, 12, 12,
+            12, 18, 16, 22, 22, 22, 16, 18, 12,
+            12, 14, 12, 18, 18, 18, 12, 14, 12,
+            12, 16, 14, 20, 20, 20, 14, 16, 12,
+            6, 10, 8, 14, 14, 14, 8, 10, 6,
+            4, 8, 6, 14, 12, 14, 6, 8, 4,
+            8, 4, 8, 16, 8, 16, 8, 4, 8,
+            -2, 10, 6, 14, 12, 14, 6, 10, -2,
+    };
+    private static final int[] CHARIOT_EG = {
+            6, 8, 8, 10, 10, 10, 8, 8, 6,
+            8, 10, 10, 12, 12, 12, 10, 10, 8,
+            6, 8, 8, 10, 10, 10, 8, 8, 6,
+            6, 8, 8, 10, 10, 10, 8, 8, 6,
+            6, 8, 8, 10, 10, 10, 8, 8, 6,
+            6, 8, 8, 10, 10, 10, 8, 8, 6,
+            4, 6, 6, 8, 8, 8, 6, 6, 4,
+            2, 4, 4, 6, 6, 6, 4, 4, 2,
+            0, 2, 2, 4, 4, 4, 2, 2, 0,
+            0, 2, 2, 4, 4, 4, 2, 2, 0,
+    };
+    private static final int[] CANNON_MG = {
+            6, 4, 0, -10, -12, -10, 0, 4, 6,
+            2, 2, 0, -4, -14, -4, 0, 2, 2,
+            2, 2, 0, -10, -8, -10, 0, 2, 2,
+            0, 0, -2, 4, 10, 4, -2, 0, 0,
+            0, 0, 0, 2, 8, 2, 0, 0, 0,
+            -2, 0, 4, 2, 6, 2, 4, 0, -2,
+            0, 0, 0, 2, 4, 2, 0, 0, 0,
+            4, 0, 8, 6, 10, 6, 8, 0, 4,
+            0, 2, 4, 6, 6, 6, 4, 2, 0,
+            0, 0, 2, 6, 6, 6, 2, 0, 0,
+    };
+    private static final int[] CANNON_EG = {
+            0, 0, 0, 2, 4, 2, 0, 0, 0,
+            0, 0, 0, 2, 4, 2, 0, 0, 0,
+            0, 0, 0, 2, 4, 2, 0, 0, 0,
+            0, 0, 0, 2, 4, 2, 0, 0, 0,
+            0, 0, 0, 2, 4, 2, 0, 0, 0,
+            0, 0, 0, 2, 4, 2, 0, 0, 0,
+            0, 0, 0, 2, 4, 2, 0, 0, 0,
+            0, 0, 0, 4, 6, 4, 0, 0, 0,
+            0, 0, 0, 4, 8, 4, 0, 0, 0,
+            0, 0, 0, 4, 6, 4, 0, 0, 0,
+    };
+    private static final int[] SOLDIER_MG = {
+            0, 3, 6, 9, 12, 9, 6, 3, 0,
+            18, 36, 56, 80, 120, 80, 56, 36, 18,
+            14, 26, 42, 60, 80, 60, 42, 26, 14,
+            10, 20, 30, 34, 40, 34, 30, 20, 10,
+            6, 12, 18, 18, 20, 18, 18, 12, 6,
+            2, 0, 8, 0, 8, 0, 8, 0, 2,
+            0, 0, -2, 0, 4, 0, -2, 0, 0,
+            0, 0, 0, 0, 0, 0, 0, 0, 0,
+            0, 0, 0, 0, 0, 0, 0, 0, 0,
+            0, 0, 0, 0, 0, 0, 0, 0, 0,
+    };
+    private static final int[] SOLDIER_EG = {
+            10, 20, 30, 40, 50, 40, 30, 20, 10,
+            50, 70, 90, 110, 120, 110, 90, 70, 50,
+            50, 70, 90, 100, 110, 100, 90, 70, 50,
+            50, 60, 70, 80, 90, 80, 70, 60, 50,
+            40, 50, 60, 70, 70, 70, 60, 50, 40,
+            0, 0, 10, 0, 10, 0, 10, 0, 0,
+            0, 0, 0, 0, 0, 0, 0, 0, 0,
+            0, 0, 0, 0, 0, 0, 0, 0, 0,
+            0, 0, 0, 0, 0, 0, 0, 0, 0,
+            0, 0, 0, 0, 0, 0, 0, 0, 0,
+    };
+
+    //[PieceType.index][square], material included, always positive for the piece's own side
+    private static final int[][] MG = new int[PieceType.COUNT * 2][AttackTables.SQUARES];
+    private static final int[][] EG = new int[PieceType.COUNT * 2][AttackTables.SQUARES];
+
+    static {
+        int[][] mg = {GENERAL_MG, ADVISOR, ELEPHANT, HORSE_MG, CHARIOT_MG, CANNON_MG, SOLDIER_MG};
+        int[][] eg = {GENERAL_EG, ADVISOR, ELEPHANT, HORSE_EG, CHARIOT_EG, CANNON_EG, SOLDIER_EG};
+        for (int type = 0; type < PieceType.COUNT; type++) {
+            for (int sq = 0; sq < AttackTables.SQUARES; sq++) {
+                int mirrored = (9 - sq / 9) * 9 + sq % 9;//black's table is red's upside down
+                MG[PieceType.index(type, true)][sq] = MATERIAL_MG[type] + mg[type][sq];
+                EG[PieceType.index(type, true)][sq] = MATERIAL_EG[type] + eg[type][sq];
+                MG[PieceType.index(type, false)][sq] = MATERIAL_MG[type] + mg[type][mirrored];
+                EG[PieceType.index(type, false)][sq] = MATERIAL_EG[type] + eg[type][mirrored];
+            }
+        }
+    }
+
+    private PieceSquareTables() {
+    }
+
+    public static int mg(int type, boolean isRed, int sq) {
+        return MG[PieceType.index(type, isRed)][sq];
+    }
+
+    public static int eg(int type, boolean isRed, int sq) {
+        return EG[PieceType.index(type, isRed)][sq];
+    }
+}
@@ -0,0 +1,26 @@
+package edu.sustech.xiangqi.model;
+
+public final class PieceType {//int ids for every piece kind, used by the array based code (bitboards, hashing)
+    public static final int GENERAL = 0;
+    public static final int ADVISOR = 1;
+    public static final int ELEPHANT = 2;
+    public static final int HORSE = 3;
+    public static final int CHARIOT = 4;
+    public static final int CANNON = 5;
+    public static final int SOLDIER = 6;
+    public static final int COUNT = 7;
+
+    private static final char[] CODES = {'K', 'A', 'E', 'H', 'R', 'C', 'P'};//same letters as the save file
+
+    private PieceType() {
+    }
+
+    public static char code(int type) {
+        return CODES[type];
+    }
+
+    //one slot per type and color: red 0..6, black 7..13
+    public static int index(int type, boolean isRed) {
+        return isRed ? type : type + COUNT;
+    }
+}
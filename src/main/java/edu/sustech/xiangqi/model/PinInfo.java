@@ -0,0 +1,158 @@
+package edu.sustech.xiangqi.model;
+
+import static edu.sustech.xiangqi.model.AttackTables.*;
+
+//what one side's general needs from its own pieces, worked out once per position so that most moves are legal or not
+//by a bitmask test instead of playing them and asking generalInCheck:
+//- the only piece between the general and an enemy chariot or the enemy general (flying general) has to stay on that line
+//- a piece on the leg of an enemy horse that would otherwise give check can only take that horse
+//- a piece that is one of the two screens between the general and an enemy cannon changes the screen whatever it does,
+//  its moves are played to be sure
+//- nothing may move onto a square between the general and an enemy cannon with nothing in between (it becomes a screen)
+//general moves and any move while in check are played as well (CheckEvasion keeps those lists short)
+//one object per search ply, compute() again for every position
+public final class PinInfo {
+    private static final int[] ROW_STEP = {-1, 1, 0, 0};
+    private static final int[] COL_STEP = {0, 0, -1, 1};
+    private static final int MAX_PINS = 8;//4 lines, 2 enemy horses
+
+    private boolean inCheck;
+    private int generalSquare;
+    private int pinCount;
+    private final int[] pinned = new int[MAX_PINS];//square of the pinned piece
+    private final long[] allowed = new long[MAX_PINS * 2];//where it may go, two longs per pin (as in AttackTables)
+    private long screenLo, screenHi;//own cannon screens
+    private long blockLo, blockHi;//open cannon lines
+
+    public static PinInfo of(ChessBoardModel model, boolean isRed) {
+        PinInfo pins = new PinInfo();
+        pins.compute(model, isRed);
+        return pins;
+    }
+
+    public void compute(ChessBoardModel model, boolean isRed) {
+        inCheck = false;
+        pinCount = 0;
+        screenLo = screenHi = blockLo = blockHi = 0;
+        AbstractPiece general = model.findGeneral(isRed);
+        if (general == null) {
+            generalSquare = -1;
+            return;
+        }
+        int gsq = square(general.getRow(), general.getCol());
+        generalSquare = gsq;
+        boolean enemy = !isRed;
+
+        for (int d = 0; d < 4; d++) {
+            //first three pieces on the line, that's all a chariot, cannon or general behind them can care about
+            int r = general.getRow() + ROW_STEP[d], c = general.getCol() + COL_STEP[d];
+            int found = 0;
+            int first = -1, second = -1;
+            AbstractPiece p1 = null, p2 = null;
+            while (model.isValidPosition(r, c) && found < 3) {
+                AbstractPiece q = model.getPieceAt(r, c);
+                int sq = square(r, c);
+                r += ROW_STEP[d];
+                c += COL_STEP[d];
+                if (q == null) {
+                    continue;
+                }
+                found++;
+                boolean slider = q.isRed() == enemy
+                        && (q.getType() == PieceType.CHARIOT || (q.getType() == PieceType.GENERAL && COL_STEP[d] == 0));
+                boolean cannon = q.isRed() == enemy && q.getType() == PieceType.CANNON;
+                if (found == 1) {
+                    first = sq;
+                    p1 = q;
+                    if (slider) {
+                        inCheck = true;
+                    } else if (cannon) {
+                        blockLo |= BETWEEN[2 * (gsq * SQUARES + sq)];
+                        blockHi |= BETWEEN[2 * (gsq * SQUARES + sq) + 1];
+                    }
+                } else if (found == 2) {
+                    second = sq;
+                    p2 = q;
+                    if (cannon) {
+                        inCheck = true;
+                    } else if (slider && p1.isRed() == isRed) {
+                        pin(first, BETWEEN[2 * (gsq * SQUARES + sq)], BETWEEN[2 * (gsq * SQUARES + sq) + 1], sq);
+                    }
+                } else if (cannon) {
+                    if (p1.isRed() == isRed) {
+                        addScreen(first);
+                    }
+                    if (p2.isRed() == isRed) {
+                        addScreen(second);
+                    }
+                }
+            }
+        }
+
+        int[] horses = HORSE_ATTACKERS[gsq];
+        int[] legs = HORSE_ATTACKER_LEGS[gsq];
+        for (int i = 0; i < horses.length; i++) {
+            AbstractPiece h = model.getPieceAt(horses[i] / 9, horses[i] % 9);
+            if (h == null || h.isRed() != enemy || h.getType() != PieceType.HORSE) {
+                continue;
+            }
+            AbstractPiece leg = model.getPieceAt(legs[i] / 9, legs[i] % 9);
+            if (leg == null) {
+                inCheck = true;
+            } else if (leg.isRed() == isRed) {
+                pin(legs[i], 0, 0, horses[i]);
+            }
+        }
+        for (int s : SOLDIER_ATTACKERS[enemy ? 0 : 1][gsq]) {
+            AbstractPiece q = model.getPieceAt(s / 9, s % 9);
+            if (q != null && q.isRed() == enemy && q.getType() == PieceType.SOLDIER) {
+                inCheck = true;
+            }
+        }
+    }
+
+    public boolean isInCheck() {
+        return inCheck;
+    }
+
+    //is the pseudo legal move of this side legal; plays it on the model only where the masks can't tell
+    public boolean isLegal(ChessBoardModel model, int move) {
+        int from = ChessBoardModel.moveFrom(move), to = ChessBoardModel.moveTo(move);
+        if (inCheck || from == generalSquare || isIn(screenLo, screenHi, from)) {
+            AbstractPiece mover = model.getPieceAt(from / 9, from % 9);
+            model.makeMove(move);
+            boolean legal = !model.generalInCheck(mover.isRed());
+            model.unmakeMove();
+            return legal;
+        }
+        if (isIn(blockLo, blockHi, to)) {
+            return false;
+        }
+        for (int k = 0; k < pinCount; k++) {
+            if (pinned[k] == from && !isIn(allowed[2 * k], allowed[2 * k + 1], to)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private void pin(int sq, long lo, long hi, int attacker) {
+        pinned[pinCount] = sq;
+        allowed[2 * pinCount] = lo;
+        allowed[2 * pinCount + 1] = hi;
+        allowed[2 * pinCount + (attacker >>> 6)] |= 1L << (attacker & 63);//taking the attacker is fine
+        pinCount++;
+    }
+
+    private void addScreen(int sq) {
+        if (sq < 64) {
+            screenLo |= 1L << sq;
+        } else {
+            screenHi |= 1L << (sq - 64);
+        }
+    }
+
+    private static boolean isIn(long lo, long hi, int sq) {
+        return ((sq < 64 ? lo : hi) >>> (sq & 63) & 1L) != 0;
+    }
+}
@@ -0,0 +1,75 @@
+package edu.sustech.xiangqi.model;
+
+import java.util.Arrays;
+
+//position key -> times seen, open addressing on primitive arrays (no boxing, ~12-16 bytes per position)
+public final class RepetitionTable {
+    private static final int INITIAL_CAPACITY = 256;//power of two
+
+    private long[] keys = new long[INITIAL_CAPACITY];
+    private int[] counts = new int[INITIAL_CAPACITY];//0 = free slot
+    private int size = 0;
+
+    public int get(long key) {
+        int mask = keys.length - 1;
+        for (int i = slot(key, mask); counts[i] != 0; i = (i + 1) & mask) {//linear probing
+            if (keys[i] == key) {
+                return counts[i];
+            }
+        }
+        return 0;
+    }
+
+    //count one more occurrence, returns the new count
+    public int increment(long key) {
+        int mask = keys.length - 1;
+        int i = slot(key, mask);
+        while (counts[i] != 0) {
+            if (keys[i] == key) {
+                return ++counts[i];
+            }
+            i = (i + 1) & mask;
+        }
+        keys[i] = key;
+        counts[i] = 1;
+        if (++size * 4 > keys.length * 3) {//keep load under 75%
+            grow();
+        }
+        return 1;
+    }
+
+    public void clear() {
+        if (size == 0) {
+            return;//nothing to wipe, e.g. setPosition over and over in the table generator
+        }
+        Arrays.fill(counts, 0);
+        size = 0;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private void grow() {
+        long[] oldKeys = keys;
+        int[] oldCounts = counts;
+        keys = new long[oldKeys.length * 2];
+        counts = new int[oldCounts.length * 2];
+        int mask = keys.length - 1;
+        for (int j = 0; j < oldKeys.length; j++) {
+            if (oldCounts[j] == 0) {
+                continue;
+            }
+            int i = slot(oldKeys[j], mask);
+            while (counts[i] != 0) {
+                i = (i + 1) & mask;
+            }
+            keys[i] = oldKeys[j];
+            counts[i] = oldCounts[j];
+        }
+    }
+
+    private static int slot(long key, int mask) {
+        return (int) (key ^ (key >>> 32)) & mask;
+    }
+}
@@ -0,0 +1,82 @@
+package edu.sustech.xiangqi.model;
+
+//chariot and cannon targets along one rank or file by table lookup instead of walking the squares:
+//ChessBoardModel keeps a 9 bit occupancy per rank (bit = col) and a 10 bit one per file (bit = row), the tables map
+//(position on the line, occupancy) to the targets on that line as a mask of the same kind
+//chariot: empty squares up to and including the first piece each way (the caller drops own pieces)
+//cannon quiet: the empty squares up to the first piece, cannon capture: the second piece each way (any color)
+public final class SlidingAttacks {
+    private static final int COLS = 9;
+    private static final int ROWS = 10;
+
+    private static final int[] RANK_CHARIOT = new int[COLS << COLS];//[col << 9 | rank occupancy]
+    private static final int[] RANK_CANNON_QUIET = new int[COLS << COLS];
+    private static final int[] RANK_CANNON_CAPTURE = new int[COLS << COLS];
+    private static final int[] FILE_CHARIOT = new int[ROWS << ROWS];//[row << 10 | file occupancy]
+    private static final int[] FILE_CANNON_QUIET = new int[ROWS << ROWS];
+    private static final int[] FILE_CANNON_CAPTURE = new int[ROWS << ROWS];
+
+    static {
+        fill(COLS, RANK_CHARIOT, RANK_CANNON_QUIET, RANK_CANNON_CAPTURE);
+        fill(ROWS, FILE_CHARIOT, FILE_CANNON_QUIET, FILE_CANNON_CAPTURE);
+    }
+
+    private SlidingAttacks() {
+    }
+
+    //every (position, occupancy) pair of a line with n squares, walking both ways once at startup
+    private static void fill(int n, int[] chariot, int[] quiet, int[] capture) {
+        for (int pos = 0; pos < n; pos++) {
+            for (int occ = 0; occ < 1 << n; occ++) {
+                int c = 0, q = 0, x = 0;
+                for (int step = -1; step <= 1; step += 2) {
+                    boolean screened = false;
+                    for (int s = pos + step; s >= 0 && s < n; s += step) {
+                        boolean occupied = (occ >>> s & 1) != 0;
+                        if (!screened) {
+                            c |= 1 << s;
+                            if (!occupied) {
+                                q |= 1 << s;
+                            } else {
+                                screened = true;
+                            }
+                        } else if (occupied) {
+                            x |= 1 << s;
+                            break;
+                        }
+                    }
+                }
+                int index = pos << n | occ;
+                chariot[index] = c;
+                quiet[index] = q;
+                capture[index] = x;
+            }
+        }
+    }
+
+    //cols a chariot on col can reach along its rank
+    public static int rankChariot(int col, int rankOccupancy) {
+        return RANK_CHARIOT[col << COLS | rankOccupancy];
+    }
+
+    public static int rankCannonQuiet(int col, int rankOccupancy) {
+        return RANK_CANNON_QUIET[col << COLS | rankOccupancy];
+    }
+
+    public static int rankCannonCapture(int col, int rankOccupancy) {
+        return RANK_CANNON_CAPTURE[col << COLS | rankOccupancy];
+    }
+
+    //rows a chariot on row can reach along its file
+    public static int fileChariot(int row, int fileOccupancy) {
+        return FILE_CHARIOT[row << ROWS | fileOccupancy];
+    }
+
+    public static int fileCannonQuiet(int row, int fileOccupancy) {
+        return FILE_CANNON_QUIET[row << ROWS | fileOccupancy];
+    }
+
+    public static int fileCannonCapture(int row, int fileOccupancy) {
+        return FILE_CANNON_CAPTURE[row << ROWS | fileOccupancy];
+    }
+}
@@ -6,6 +6,11 @@ public class SoldierPiece extends AbstractPiece {
         super(name, row, col, isRed);
     }
 
+    @Override
+    public int getType() {
+        return PieceType.SOLDIER;
+    }
+
     @Override
     public boolean canMoveTo(int targetRow, int targetCol, ChessBoardModel model) {
         int currentRow = getRow();
@@ -0,0 +1,442 @@
+package edu.sustech.xiangqi.model;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+//endgame tables: the exact result of every position of a small material set (win / draw / loss for the side to move
+//and the distance to mate in plies), built offline by tools.TablebaseGenerator, one file per set, e.g. "KRvKAA.xtb"
+//file: 16 byte header (magic, positions, blocks, unused), block offsets (long, from the start of the file), then blocks
+//of BLOCK_SIZE positions, each deflate compressed; the file is memory mapped and a probe only inflates the block it
+//needs (the last one is kept per table)
+//a table is stored with the stronger side as red, positions with the colors the other way round are flipped
+//(rows mirrored, colors and side to move swapped) before indexing
+//rules as everywhere else in the program: no legal move while in check loses, no legal move otherwise is a draw
+public class Tablebase {
+    public static final int NOT_FOUND = -1;//material set not in the tables
+    public static final int DRAW = 0;
+    public static final int ILLEGAL = 255;//side not to move in check, two pieces on one square ...
+    //any other code is the distance to mate in plies + 1: odd distance = side to move mates, even = gets mated
+    public static final int MAX_DISTANCE = 253;
+    public static final String EXTENSION = ".xtb";
+    private static final int MAGIC = 0x58544231;//"XTB1"
+    private static final int HEADER_BYTES = 16;
+    private static final int BLOCK_SIZE = 4096;//positions per compressed block
+
+    private static volatile Tablebase defaultTablebase;//used by checkEndgame and the engine, null = no tables
+
+    private final Map<String, Table> tables = new HashMap<>();
+    private final Map<String, Layout> layouts = new HashMap<>();
+    private int maxPieces = 0;
+
+    //codes of one material set by position index
+    public interface Table {
+        int get(int index);
+    }
+
+    private Tablebase() {
+    }
+
+    public static Tablebase getDefault() {
+        return defaultTablebase;
+    }
+
+    public static void setDefault(Tablebase tablebase) {
+        defaultTablebase = tablebase;
+    }
+
+    //every *.xtb file of the directory, memory mapped
+    public static Tablebase open(Path directory) throws IOException {
+        Tablebase tb = new Tablebase();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, "*" + EXTENSION)) {
+            for (Path file : files) {
+                String name = file.getFileName().toString();
+                try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+                    tb.add(name.substring(0, name.length() - EXTENSION.length()),
+                            new MappedTable(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size())));
+                }
+            }
+        }
+        return tb;
+    }
+
+    //tables that are still in memory (the generator probes the sets it built before)
+    public static Tablebase ofArrays(Map<String, byte[]> codes) {
+        Tablebase tb = new Tablebase();
+        for (Map.Entry<String, byte[]> e : codes.entrySet()) {
+            byte[] table = e.getValue();
+            tb.add(e.getKey(), index -> table[index] & 0xFF);
+        }
+        return tb;
+    }
+
+    private void add(String name, Table table) {
+        tables.put(name, table);
+        layouts.put(name, new Layout(name));
+        maxPieces = Math.max(maxPieces, name.length() - 1);
+    }
+
+    public int size() {
+        return tables.size();
+    }
+
+    //result code of the position (see above), NOT_FOUND if its material set has no table
+    //a position where neither side has a piece that can cross the river is a draw without any table:
+    //advisors, elephants and the general alone can never give check
+    public int probe(ChessBoardModel model) {
+        long materialKey = model.getMaterialKey();
+        if (!hasAttackers(materialKey, true) && !hasAttackers(materialKey, false)) {
+            return DRAW;
+        }
+        if (model.getPieces().size() > maxPieces) {
+            return NOT_FOUND;
+        }
+        String red = sideName(materialKey, true), black = sideName(materialKey, false);
+        boolean flip = !isRedFirst(red, black);
+        String name = flip ? black + "v" + red : red + "v" + black;
+        Table table = tables.get(name);
+        if (table == null) {
+            return NOT_FOUND;
+        }
+        int index = layouts.get(name).index(model, flip);
+        return index < 0 ? NOT_FOUND : table.get(index);
+    }
+
+    //move that keeps the table result: quickest mate when winning, longest defence when losing, a drawing move in a
+    //draw; 0 if the position isn't in the tables. Plays the moves on the model and takes them back
+    public int bestMove(ChessBoardModel model) {
+        int code = probe(model);
+        if (code == NOT_FOUND || code == ILLEGAL) {
+            return 0;
+        }
+        int[] moves = new int[MoveGenerator.MAX_MOVES];
+        int count = MoveGenerator.generateLegal(model, model.isRedTurn(), moves, 0);
+        int best = 0;
+        int bestRank = Integer.MIN_VALUE;
+        for (int i = 0; i < count; i++) {
+            model.makeMove(moves[i]);
+            int child = probe(model);
+            model.unmakeMove();
+            if (child == NOT_FOUND || child == ILLEGAL) {
+                continue;
+            }
+            //from the mover's point of view: opponent mated soonest > draw > opponent mates latest
+            int rank = child == DRAW ? 0 : isLoss(child) ? 1000 - distance(child) : distance(child) - 1000;
+            if (rank > bestRank) {
+                bestRank = rank;
+                best = moves[i];
+            }
+        }
+        return best;
+    }
+
+    public static boolean isWin(int code) {
+        return code > 0 && code != ILLEGAL && (code - 1) % 2 == 1;
+    }
+
+    public static boolean isLoss(int code) {
+        return code > 0 && code != ILLEGAL && (code - 1) % 2 == 0;
+    }
+
+    //plies to mate for a win / loss code
+    public static int distance(int code) {
+        return code - 1;
+    }
+
+    //horse, chariot, cannon or soldier: a piece that can give check
+    public static boolean hasAttackers(long materialKey, boolean isRed) {
+        return ChessBoardModel.materialCount(materialKey, PieceType.HORSE, isRed) > 0
+                || ChessBoardModel.materialCount(materialKey, PieceType.CHARIOT, isRed) > 0
+                || ChessBoardModel.materialCount(materialKey, PieceType.CANNON, isRed) > 0
+                || ChessBoardModel.materialCount(materialKey, PieceType.SOLDIER, isRed) > 0;
+    }
+
+    //one side's material as part of a table name: save-file letters in PieceType order, e.g. "KHP"
+    public static String sideName(long materialKey, boolean isRed) {
+        StringBuilder sb = new StringBuilder(8);
+        for (int type = 0; type < PieceType.COUNT; type++) {
+            for (int n = ChessBoardModel.materialCount(materialKey, type, isRed); n > 0; n--) {
+                sb.append(PieceType.code(type));
+            }
+        }
+        return sb.toString();
+    }
+
+    //table name for red / black material, stronger side first (by material value, ties by name)
+    public static String tableName(String red, String black) {
+        return isRedFirst(red, black) ? red + "v" + black : black + "v" + red;
+    }
+
+    private static boolean isRedFirst(String red, String black) {
+        int r = strength(red), b = strength(black);
+        return r != b ? r > b : red.compareTo(black) >= 0;
+    }
+
+    private static int strength(String side) {
+        int sum = 0;
+        for (int i = 0; i < side.length(); i++) {
+            sum += PieceSquareTables.MATERIAL_MG[typeOf(side.charAt(i))];
+        }
+        return sum;
+    }
+
+    static int typeOf(char code) {
+        for (int type = 0; type < PieceType.COUNT; type++) {
+            if (PieceType.code(type) == code) {
+                return type;
+            }
+        }
+        throw new IllegalArgumentException("unknown piece letter " + code);
+    }
+
+    //write a finished table (codes by position index) in the compressed file format
+    public static void write(Path file, byte[] codes) throws IOException {
+        int blocks = (codes.length + BLOCK_SIZE - 1) / BLOCK_SIZE;
+        List<byte[]> compressed = new ArrayList<>(blocks);
+        Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+        byte[] buffer = new byte[BLOCK_SIZE * 2];
+        for (int b = 0; b < blocks; b++) {
+            int from = b * BLOCK_SIZE;
+            deflater.reset();
+            deflater.setInput(codes, from, Math.min(BLOCK_SIZE, codes.length - from));
+            deflater.finish();
+            int length = 0;
+            while (!deflater.finished()) {
+                length += deflater.deflate(buffer, length, buffer.length - length);
+            }
+            byte[] block = new byte[length];
+            System.arraycopy(buffer, 0, block, 0, length);
+            compressed.add(block);
+        }
+        deflater.end();
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file)))) {
+            out.writeInt(MAGIC);
+            out.writeInt(codes.length);
+            out.writeInt(blocks);
+            out.writeInt(0);
+            long offset = HEADER_BYTES + 8L * (blocks + 1);
+            for (byte[] block : compressed) {
+                out.writeLong(offset);
+                offset += block.length;
+            }
+            out.writeLong(offset);
+            for (byte[] block : compressed) {
+                out.write(block);
+            }
+        }
+    }
+
+    private static class MappedTable implements Table {
+        private final MappedByteBuffer buffer;
+        private final int positions;
+        private final Inflater inflater = new Inflater();
+        private final byte[] block = new byte[BLOCK_SIZE];
+        private int cachedBlock = -1;
+
+        MappedTable(MappedByteBuffer buffer) throws IOException {
+            if (buffer.capacity() < HEADER_BYTES || buffer.getInt(0) != MAGIC) {
+                throw new IOException("not an endgame table file");
+            }
+            this.buffer = buffer;
+            this.positions = buffer.getInt(4);
+        }
+
+        @Override
+        public synchronized int get(int index) {
+            if (index < 0 || index >= positions) {
+                return NOT_FOUND;
+            }
+            int b = index / BLOCK_SIZE;
+            if (b != cachedBlock) {
+                int from = (int) buffer.getLong(HEADER_BYTES + 8 * b);
+                int to = (int) buffer.getLong(HEADER_BYTES + 8 * (b + 1));
+                ByteBuffer data = buffer.slice(from, to - from);
+                inflater.reset();
+                inflater.setInput(data);
+                try {
+                    int length = 0;
+                    while (!inflater.finished() && length < block.length) {
+                        length += inflater.inflate(block, length, block.length - length);
+                    }
+                } catch (DataFormatException e) {
+                    cachedBlock = -1;
+                    return NOT_FOUND;
+                }
+                cachedBlock = b;
+            }
+            return block[index % BLOCK_SIZE] & 0xFF;
+        }
+    }
+
+    //position <-> index for one material set: side to move, then every piece's square as a digit in base "number of
+    //squares that kind of piece can stand on" (generals the palace, soldiers never behind their river bank ...)
+    //identical pieces take the squares in increasing order, other orders are not used
+    public static class Layout {
+        private final int[] types;//per piece, red pieces first, each side in PieceType order
+        private final boolean[] reds;
+        private final int[][] squares;//per piece: slot -> square
+        private final int[][] slots;//per piece: square -> slot, -1 where it can't stand
+        private final int[] groupStart = new int[PieceType.COUNT * 2];//first piece of each PieceType.index
+        private final int[] groupSize = new int[PieceType.COUNT * 2];
+        private final int perSide;
+
+        public Layout(String name) {
+            int v = name.indexOf('v');
+            String red = name.substring(0, v), black = name.substring(v + 1);
+            int n = red.length() + black.length();
+            types = new int[n];
+            reds = new boolean[n];
+            squares = new int[n][];
+            slots = new int[n][];
+            int i = 0;
+            for (boolean isRed : new boolean[]{true, false}) {
+                String side = isRed ? red : black;
+                for (int type = 0; type < PieceType.COUNT; type++) {
+                    for (int k = 0; k < side.length(); k++) {
+                        if (typeOf(side.charAt(k)) != type) {
+                            continue;
+                        }
+                        int g = PieceType.index(type, isRed);
+                        if (groupSize[g]++ == 0) {
+                            groupStart[g] = i;
+                        }
+                        types[i] = type;
+                        reds[i] = isRed;
+                        squares[i] = squaresOf(type, isRed);
+                        slots[i] = new int[AttackTables.SQUARES];
+                        java.util.Arrays.fill(slots[i], -1);
+                        for (int s = 0; s < squares[i].length; s++) {
+                            slots[i][squares[i][s]] = s;
+                        }
+                        i++;
+                    }
+                }
+            }
+            long size = 1;
+            for (int[] list : squares) {
+                size *= list.length;
+            }
+            if (size * 2 > Integer.MAX_VALUE) {
+                throw new IllegalArgumentException("material set too big for a table: " + name);
+            }
+            perSide = (int) size;
+        }
+
+        public int size() {
+            return perSide * 2;
+        }
+
+        public boolean isRedToMove(int index) {
+            return index < perSide;
+        }
+
+        //index of the model's position, -1 if its material doesn't fit; flip = read the board upside down with the
+        //colors swapped (the table's red side is black on the board)
+        public int index(ChessBoardModel model, boolean flip) {
+            int n = types.length;
+            int[] sq = new int[n];
+            int[] filled = new int[PieceType.COUNT * 2];
+            for (AbstractPiece p : model.getPieces()) {
+                int g = PieceType.index(p.getType(), p.isRed() != flip);
+                if (filled[g] == groupSize[g]) {
+                    return -1;
+                }
+                int row = flip ? ChessBoardModel.getRows() - 1 - p.getRow() : p.getRow();
+                int s = row * ChessBoardModel.getCols() + p.getCol();
+                //insertion into the group, kept in increasing square order
+                int at = groupStart[g] + filled[g]++;
+                while (at > groupStart[g] && sq[at - 1] > s) {
+                    sq[at] = sq[at - 1];
+                    at--;
+                }
+                sq[at] = s;
+            }
+            int index = 0;
+            for (int i = 0; i < n; i++) {
+                int slot = slots[i][sq[i]];
+                if (slot < 0) {
+                    return -1;
+                }
+                index = index * squares[i].length + slot;
+            }
+            return (model.isRedTurn() != flip ? 0 : perSide) + index;
+        }
+
+        //pieces of the position with this index, null if the index is not a real placement
+        //(two pieces on one square, identical pieces not in increasing order)
+        public List<AbstractPiece> decode(int index) {
+            int n = types.length;
+            int[] sq = new int[n];
+            int rest = index % perSide;
+            for (int i = n - 1; i >= 0; i--) {
+                sq[i] = squares[i][rest % squares[i].length];
+                rest /= squares[i].length;
+            }
+            for (int i = 0; i < n; i++) {
+                for (int j = i + 1; j < n; j++) {
+                    if (sq[i] == sq[j]) {
+                        return null;
+                    }
+                }
+                if (i > 0 && types[i] == types[i - 1] && reds[i] == reds[i - 1] && sq[i] < sq[i - 1]) {
+                    return null;
+                }
+            }
+            List<AbstractPiece> pieces = new ArrayList<>(n);
+            for (int i = 0; i < n; i++) {
+                int cols = ChessBoardModel.getCols();
+                pieces.add(ChessBoardModel.createPiece(PieceType.code(types[i]), sq[i] / cols, sq[i] % cols, reds[i]));
+            }
+            return pieces;
+        }
+
+        //squares a piece can ever stand on, increasing
+        private static int[] squaresOf(int type, boolean isRed) {
+            List<Integer> list = new ArrayList<>();
+            for (int sq = 0; sq < AttackTables.SQUARES; sq++) {
+                //written for red (rows 5-9 are red's half), black is red upside down
+                int row = isRed ? sq / 9 : 9 - sq / 9, col = sq % 9;
+                boolean ok;
+                switch (type) {
+                    case PieceType.GENERAL:
+                        ok = row >= 7 && col >= 3 && col <= 5;
+                        break;
+                    case PieceType.ADVISOR:
+                        ok = row >= 7 && col >= 3 && col <= 5 && (row + col) % 2 == 0;
+                        break;
+                    case PieceType.ELEPHANT:
+                        ok = row >= 5 && row % 2 == 1 && (row + col) % 4 == 3;
+                        break;
+                    case PieceType.SOLDIER:
+                        ok = row <= 4 || (row <= 6 && col % 2 == 0);
+                        break;
+                    default:
+                        ok = true;
+                }
+                if (ok) {
+                    list.add(sq);
+                }
+            }
+            int[] result = new int[list.size()];
+            for (int i = 0; i < result.length; i++) {
+                result[i] = list.get(i);
+            }
+            return result;
+        }
+    }
+}
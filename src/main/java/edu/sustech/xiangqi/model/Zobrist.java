@@ -0,0 +1,30 @@
+package edu.sustech.xiangqi.model;
+
+import java.util.SplittableRandom;
+
+//64-bit position keys: xor of one random number per (piece, square) plus one for black to move
+//fixed seed so keys stay the same between runs (saved books / tables depend on that)
+public final class Zobrist {
+    private static final long SEED = 0x58_49_41_4E_47_51_49L;//"XIANGQI"
+    private static final long[] PIECE_SQUARE = new long[PieceType.COUNT * 2 * AttackTables.SQUARES];
+    public static final long BLACK_TO_MOVE;
+
+    static {
+        SplittableRandom rnd = new SplittableRandom(SEED);
+        for (int i = 0; i < PIECE_SQUARE.length; i++) {
+            PIECE_SQUARE[i] = rnd.nextLong();
+        }
+        BLACK_TO_MOVE = rnd.nextLong();
+    }
+
+    private Zobrist() {
+    }
+
+    public static long piece(int type, boolean isRed, int sq) {
+        return PIECE_SQUARE[PieceType.index(type, isRed) * AttackTables.SQUARES + sq];
+    }
+
+    public static long piece(AbstractPiece p, int row, int col) {
+        return piece(p.getType(), p.isRed(), AttackTables.square(row, col));
+    }
+}
@@ -0,0 +1,139 @@
+package edu.sustech.xiangqi.tools;
+
+import edu.sustech.xiangqi.engine.OpeningBook;
+import edu.sustech.xiangqi.model.ChessBoardModel;
+import edu.sustech.xiangqi.model.MoveGenerator;
+
+import java.io.BufferedOutputStream;
+import java.io.BufferedReader;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+//compiles a collection of games into an opening book file (format: engine.OpeningBook)
+//input: one game per line, ICCS moves from the start position ("h2e2 h9g7 ..."), optionally ending in the result
+//1-0 (red won), 0-1 (black won), 1/2-1/2 (draw); a game without result counts as a draw; # starts a comment line
+//a game is read up to its first illegal move
+//usage: BookBuilder <games.txt> <book.bin> [--plies n] [--min-games n]
+public final class BookBuilder {
+    private static final String START_FEN = "rnbakabnr/9/1c5c1/p1p1p1p1p/9/9/P1P1P1P1P/1C5C1/9/RNBAKABNR w";
+
+    private BookBuilder() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.out.println("usage: BookBuilder <games.txt> <book.bin> [--plies n] [--min-games n]");
+            return;
+        }
+        int plies = 30;
+        int minGames = 2;
+        for (int i = 2; i < args.length; i++) {
+            switch (args[i]) {
+                case "--plies":
+                    plies = Integer.parseInt(args[++i]);
+                    break;
+                case "--min-games":
+                    minGames = Integer.parseInt(args[++i]);
+                    break;
+                default:
+                    throw new IllegalArgumentException("unknown option " + args[i]);
+            }
+        }
+
+        //book key -> stored move -> {wins, draws, losses} for the side to move
+        Map<Long, Map<Integer, int[]>> stats = new HashMap<>();
+        Set<Long> unshared = new HashSet<>();//(position key, move) pairs before mirror sharing, for the statistics
+        int games = 0, illegal = 0;
+        long start = System.currentTimeMillis();
+        try (BufferedReader reader = Files.newBufferedReader(Path.of(args[0]), StandardCharsets.UTF_8)) {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                String[] tokens = line.split("\\s+");
+                int redResult = result(tokens[tokens.length - 1]);//1 red won, 0 draw, -1 black won
+                ChessBoardModel model = ChessBoardModel.fromFen(START_FEN);
+                for (int ply = 0; ply < plies && ply < tokens.length; ply++) {
+                    String token = tokens[ply].replace("-", "");
+                    if (token.length() != 4) {
+                        break;//result or junk
+                    }
+                    int move = ChessBoardModel.fromIccs(token);
+                    if (!MoveGenerator.isLegal(model, move)) {
+                        illegal++;
+                        break;
+                    }
+                    long key = model.getHash();
+                    long mirrorKey = OpeningBook.mirroredHash(model);
+                    unshared.add(key * 31 + move);
+                    int stored = move;
+                    if (mirrorKey < key) {
+                        key = mirrorKey;
+                        stored = OpeningBook.mirrorMove(move);
+                    } else if (mirrorKey == key) {
+                        stored = Math.min(move, OpeningBook.mirrorMove(move));
+                    }
+                    int[] wdl = stats.computeIfAbsent(key, k -> new HashMap<>()).computeIfAbsent(stored, m -> new int[3]);
+                    int score = model.isRedTurn() ? redResult : -redResult;
+                    wdl[score > 0 ? 0 : score == 0 ? 1 : 2]++;
+                    model.makeMove(move);
+                }
+                games++;
+            }
+        }
+
+        //records sorted by key, best weight first within a key
+        List<long[]> records = new ArrayList<>();//{key, move, weight, wins, draws, losses}
+        for (Map.Entry<Long, Map<Integer, int[]>> position : stats.entrySet()) {
+            for (Map.Entry<Integer, int[]> m : position.getValue().entrySet()) {
+                int[] wdl = m.getValue();
+                int weight = Math.min(0xFFFF, 2 * wdl[0] + wdl[1]);
+                if (wdl[0] + wdl[1] + wdl[2] >= minGames && weight > 0) {
+                    records.add(new long[]{position.getKey(), m.getKey(), weight, wdl[0], wdl[1], wdl[2]});
+                }
+            }
+        }
+        records.sort((a, b) -> a[0] != b[0] ? Long.compare(a[0], b[0]) : Long.compare(b[2], a[2]));
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(Path.of(args[1]))))) {
+            out.writeInt(OpeningBook.MAGIC);
+            out.writeInt(OpeningBook.VERSION);
+            out.writeInt(records.size());
+            out.writeInt(0);
+            for (long[] r : records) {
+                out.writeLong(r[0]);
+                out.writeShort((int) r[1]);
+                out.writeShort((int) r[2]);
+                out.writeInt((int) r[3]);
+                out.writeInt((int) r[4]);
+                out.writeInt((int) r[5]);
+            }
+        }
+        long bytes = OpeningBook.HEADER_BYTES + (long) records.size() * OpeningBook.RECORD_BYTES;
+        System.out.println(games + " games (" + illegal + " cut at an illegal move), " + stats.size() + " positions, "
+                + unshared.size() + " position / move pairs, " + records.size() + " records after mirror sharing and --min-games "
+                + minGames + ", " + bytes + " bytes, " + (System.currentTimeMillis() - start) + " ms");
+    }
+
+    private static int result(String token) {
+        switch (token) {
+            case "1-0":
+                return 1;
+            case "0-1":
+                return -1;
+            default:
+                return 0;
+        }
+    }
+}
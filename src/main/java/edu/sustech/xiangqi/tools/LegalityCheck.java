@@ -0,0 +1,265 @@
+package edu.sustech.xiangqi.tools;
+
+import edu.sustech.xiangqi.model.AbstractPiece;
+import edu.sustech.xiangqi.model.BitboardPosition;
+import edu.sustech.xiangqi.model.ChessBoardModel;
+import edu.sustech.xiangqi.model.CheckEvasion;
+import edu.sustech.xiangqi.model.MoveGenerator;
+import edu.sustech.xiangqi.model.PieceType;
+import edu.sustech.xiangqi.model.PinInfo;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+//oracle check for the shortcuts of the move generator: plays random games from the start position and in every
+//position compares them against the slow way of finding the same thing out
+//- PinInfo.isInCheck / isLegal against playing the move and asking generalInCheck
+//- CheckEvasion.generateLegal / hasEvasion, MoveGenerator.generateLegal, hasLegalMove against all pseudo legal moves
+//  played one by one
+//- chariot and cannon canMoveTo (occupancy tables) against walking the squares in between, and generate against
+//  that walking reference (canMoveTo for the other pieces)
+//- the rank / file occupancy kept by the model against the pieces on the board
+//- BitboardPosition.canMoveTo against canMoveTo for every piece and square (BitboardPosition.crossCheck)
+//checks are picked more often than other moves so that plenty of positions are in check; every few plies a move is
+//taken back and another one played, so unmakeMove gets checked too
+//usage: LegalityCheck [games] [--seed n] [--plies n]
+public class LegalityCheck {
+    private static final int REPORT_LIMIT = 10;//mismatches printed in full, the rest only counted
+
+    private ChessBoardModel model;
+    private final PinInfo pins = new PinInfo();
+    private final int[] moves = new int[MoveGenerator.MAX_MOVES];
+    private final int[] legal = new int[MoveGenerator.MAX_MOVES];
+    private final int[] buffer = new int[MoveGenerator.MAX_MOVES];
+
+    private long positions, inCheck, pinMoves, squares;
+    private long mismatches;
+
+    public static void main(String[] args) {
+        int games = 1000;
+        long seed = 1;
+        int plies = 200;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--seed":
+                    seed = Long.parseLong(args[++i]);
+                    break;
+                case "--plies":
+                    plies = Integer.parseInt(args[++i]);
+                    break;
+                default:
+                    games = Integer.parseInt(args[i]);
+            }
+        }
+
+        LegalityCheck check = new LegalityCheck();
+        Random random = new Random(seed);
+        long start = System.nanoTime();
+        for (int g = 0; g < games; g++) {
+            check.playGame(random, plies);
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("games %d  positions %,d  in check %,d  moves %,d  slider squares %,d  %.1f s%n",
+                games, check.positions, check.inCheck, check.pinMoves, check.squares, seconds);
+        if (check.mismatches > 0) {
+            System.out.println(check.mismatches + " mismatch(es) FAILED");
+            System.exit(1);
+        }
+        System.out.println("OK");
+    }
+
+    private void playGame(Random random, int plies) {
+        model = new ChessBoardModel();
+        for (int ply = 0; ply < plies; ply++) {
+            int count = checkPosition();
+            if (count == 0) {
+                return;//mate or stalemate
+            }
+            boolean side = model.isRedTurn();
+            int pick = legal[random.nextInt(count)];
+            for (int k = 0; k < 6; k++) {
+                int candidate = legal[random.nextInt(count)];
+                model.makeMove(candidate);
+                boolean check = model.generalInCheck(!side);
+                model.unmakeMove();
+                if (check) {
+                    pick = candidate;
+                    break;
+                }
+            }
+            model.makeMove(pick);
+            if (random.nextInt(8) == 0) {
+                model.unmakeMove();
+                model.makeMove(legal[random.nextInt(count)]);
+            }
+        }
+    }
+
+    //runs every comparison on the current position, returns the number of legal moves (left in legal, sorted)
+    private int checkPosition() {
+        positions++;
+        boolean side = model.isRedTurn();
+        checkOccupancy();
+        checkSliders();
+        int differ = BitboardPosition.crossCheck(model);
+        if (differ != 0) {
+            report("BitboardPosition.canMoveTo, " + differ + " piece / square answers differ from canMoveTo", -1);
+        }
+
+        int end = MoveGenerator.generate(model, side, moves, 0);
+        checkGenerate(side, end);
+
+        //reference: every pseudo legal move played
+        int count = 0;
+        for (int i = 0; i < end; i++) {
+            model.makeMove(moves[i]);
+            boolean ok = !model.generalInCheck(side);
+            model.unmakeMove();
+            if (ok) {
+                legal[count++] = moves[i];
+            }
+        }
+        Arrays.sort(legal, 0, count);
+
+        boolean check = model.generalInCheck(side);
+        pins.compute(model, side);
+        if (pins.isInCheck() != check) {
+            report("PinInfo.isInCheck " + pins.isInCheck(), -1);
+        }
+        for (int i = 0; i < end; i++) {
+            pinMoves++;
+            boolean ok = Arrays.binarySearch(legal, 0, count, moves[i]) >= 0;
+            if (pins.isLegal(model, moves[i]) != ok) {
+                report("PinInfo.isLegal, played: " + ok, moves[i]);
+            }
+        }
+
+        if (check) {
+            inCheck++;
+            int n = CheckEvasion.generateLegal(model, side, buffer, 0);
+            compareSets("CheckEvasion.generateLegal", n, count);
+            if (CheckEvasion.hasEvasion(model, side) != (count > 0)) {
+                report("CheckEvasion.hasEvasion, legal moves: " + count, -1);
+            }
+        }
+        int n = MoveGenerator.generateLegal(model, side, buffer, 0);
+        compareSets("MoveGenerator.generateLegal", n, count);
+        if (model.hasLegalMove(side) != (count > 0)) {
+            report("hasLegalMove, legal moves: " + count, -1);
+        }
+        return count;
+    }
+
+    //buffer[0..n) against legal[0..count) as sets
+    private void compareSets(String what, int n, int count) {
+        Arrays.sort(buffer, 0, n);
+        if (!Arrays.equals(buffer, 0, n, legal, 0, count)) {
+            report(what + " " + n + " moves, played " + count, -1);
+        }
+    }
+
+    private void checkOccupancy() {
+        for (int row = 0; row < 10; row++) {
+            int bits = 0;
+            for (int col = 0; col < 9; col++) {
+                if (model.getPieceAt(row, col) != null) {
+                    bits |= 1 << col;
+                }
+            }
+            if (model.getRankOccupancy(row) != bits) {
+                report("rank occupancy row " + row + ": " + model.getRankOccupancy(row) + ", board " + bits, -1);
+            }
+        }
+        for (int col = 0; col < 9; col++) {
+            int bits = 0;
+            for (int row = 0; row < 10; row++) {
+                if (model.getPieceAt(row, col) != null) {
+                    bits |= 1 << row;
+                }
+            }
+            if (model.getFileOccupancy(col) != bits) {
+                report("file occupancy col " + col + ": " + model.getFileOccupancy(col) + ", board " + bits, -1);
+            }
+        }
+    }
+
+    //chariot and cannon canMoveTo against the walking rules, all 90 squares
+    private void checkSliders() {
+        List<AbstractPiece> pieces = model.getPieces();
+        for (int i = 0; i < pieces.size(); i++) {
+            AbstractPiece p = pieces.get(i);
+            if (p.getType() != PieceType.CHARIOT && p.getType() != PieceType.CANNON) {
+                continue;
+            }
+            for (int sq = 0; sq < 90; sq++) {
+                squares++;
+                boolean walked = walkSlider(p, sq / 9, sq % 9);
+                if (p.canMoveTo(sq / 9, sq % 9, model) != walked) {
+                    report("canMoveTo " + PieceType.code(p.getType()) + ", walking: " + walked,
+                            ChessBoardModel.encodeMove(p.getRow(), p.getCol(), sq / 9, sq % 9));
+                }
+            }
+        }
+    }
+
+    //generate against the reference: every piece of the side, every square not holding an own piece
+    private void checkGenerate(boolean side, int end) {
+        int count = 0;
+        List<AbstractPiece> pieces = model.getPieces();
+        for (int i = 0; i < pieces.size(); i++) {
+            AbstractPiece p = pieces.get(i);
+            if (p.isRed() != side) {
+                continue;
+            }
+            for (int sq = 0; sq < 90; sq++) {
+                AbstractPiece target = model.getPieceAt(sq / 9, sq % 9);
+                if (target != null && target.isRed() == side) {
+                    continue;
+                }
+                boolean reachable = p.getType() == PieceType.CHARIOT || p.getType() == PieceType.CANNON
+                        ? walkSlider(p, sq / 9, sq % 9) : p.canMoveTo(sq / 9, sq % 9, model);
+                if (reachable) {
+                    buffer[count++] = ChessBoardModel.encodeMove(p.getRow(), p.getCol(), sq / 9, sq % 9);
+                }
+            }
+        }
+        int[] generated = Arrays.copyOf(moves, end);
+        Arrays.sort(generated);
+        Arrays.sort(buffer, 0, count);
+        if (!Arrays.equals(generated, 0, end, buffer, 0, count)) {
+            report("MoveGenerator.generate " + end + " moves, reference " + count, -1);
+        }
+    }
+
+    //chariot: straight line, nothing in between; cannon: same to an empty square, exactly one screen to capture
+    //(the piece on the target square may be an own one, as in canMoveTo)
+    private boolean walkSlider(AbstractPiece p, int row, int col) {
+        int r0 = p.getRow(), c0 = p.getCol();
+        if ((r0 == row) == (c0 == col)) {
+            return false;//same square, or not on one line
+        }
+        int between = 0;
+        if (r0 == row) {
+            for (int c = Math.min(c0, col) + 1; c < Math.max(c0, col); c++) {
+                between += model.getPieceAt(row, c) != null ? 1 : 0;
+            }
+        } else {
+            for (int r = Math.min(r0, row) + 1; r < Math.max(r0, row); r++) {
+                between += model.getPieceAt(r, col) != null ? 1 : 0;
+            }
+        }
+        if (p.getType() == PieceType.CHARIOT || model.getPieceAt(row, col) == null) {
+            return between == 0;
+        }
+        return between == 1;
+    }
+
+    private void report(String what, int move) {
+        mismatches++;
+        if (mismatches <= REPORT_LIMIT) {
+            System.out.println("mismatch: " + what + (move >= 0 ? " move " + ChessBoardModel.toIccs(move) : "")
+                    + " in " + model.toFen());
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package edu.sustech.xiangqi.tools;
+
+import edu.sustech.xiangqi.model.ChessBoardModel;
+import edu.sustech.xiangqi.model.MoveGenerator;
+import edu.sustech.xiangqi.model.PinInfo;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+//perft: counts the leaf nodes of the legal move tree to a fixed depth
+//used as correctness baseline (against the table below) and as a speed number (nodes per second) for the model
+//usage: Perft [depth] [--position name|all] [--divide] [--threads n]
+public class Perft {
+    //name, position (board + side to move, FEN style), expected node counts for depth 1, 2, 3 ...
+    //the usual published Xiangqi perft positions: cannon screens and captures, blocked horse legs and elephant eyes,
+    //generals on shared files and soldiers past the river all show up in the first few plies
+    private static final Object[][] SUITE = {
+            {"start", "rnbakabnr/9/1c5c1/p1p1p1p1p/9/9/P1P1P1P1P/1C5C1/9/RNBAKABNR w",
+                    new long[]{44, 1920, 79666, 3290240, 133312995}},
+            {"midgame", "r1ba1a3/4kn3/2n1b4/pNp1p1p1p/4c4/6P2/P1P2R2P/1CcC5/9/2BAKAB2 w",
+                    new long[]{38, 1128, 43929, 1339047, 53112976}},
+            {"cramped", "1cbak4/9/n2a5/2p1p3p/5cp2/2n2N3/6PCP/3AB4/2C6/3A1K1N1 w",
+                    new long[]{7, 281, 8620, 326201, 10369923}},
+            {"open-files", "5a3/3k5/3aR4/9/5r3/5n3/9/3A1A3/5K3/2BC2B2 w",
+                    new long[]{25, 424, 9850, 202884, 4739553}},
+            {"endgame-1", "CRN1k1b2/3ca4/4ba3/9/2nr5/9/9/4B4/4A4/4KA3 w",
+                    new long[]{28, 516, 14808, 395483, 11842230}},
+            {"endgame-2", "R1N1k1b2/9/3aba3/9/2nr5/2B6/9/4B4/4A4/4KA3 w",
+                    new long[]{21, 364, 7626, 162837, 3500505}},
+    };
+
+    public static void main(String[] args) {
+        int depth = 4;
+        String positionName = "all";
+        boolean divide = false;
+        int threads = 1;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--position":
+                    positionName = args[++i];
+                    break;
+                case "--divide":
+                    divide = true;
+                    break;
+                case "--threads":
+                    threads = Integer.parseInt(args[++i]);
+                    break;
+                default:
+                    depth = Integer.parseInt(args[i]);
+            }
+        }
+
+        int failures = 0;
+        for (Object[] entry : SUITE) {
+            String name = (String) entry[0];
+            if (!positionName.equals("all") && !positionName.equals(name)) {
+                continue;
+            }
+            ChessBoardModel model = ChessBoardModel.fromFen((String) entry[1]);
+            long[] expected = (long[]) entry[2];
+
+            if (divide) {
+                divide(model, depth);
+            }
+            long start = System.nanoTime();
+            long nodes = threads > 1 ? perftParallel(model, depth, threads) : perft(model, depth);
+            double seconds = (System.nanoTime() - start) / 1e9;
+
+            String check;
+            if (depth - 1 < expected.length) {
+                boolean ok = nodes == expected[depth - 1];
+                check = ok ? "OK" : "FAIL (expected " + expected[depth - 1] + ")";
+                if (!ok) {
+                    failures++;
+                }
+            } else {
+                check = "no reference";
+            }
+            System.out.printf("%-16s depth %d  nodes %12d  %8.3f s  %,12.0f nps  %s%n",
+                    name, depth, nodes, seconds, nodes / Math.max(seconds, 1e-9), check);
+        }
+        if (failures > 0) {
+            System.out.println(failures + " position(s) FAILED");
+            System.exit(1);
+        }
+    }
+
+    //buffers belong to this call (so to one ForkJoin task in the parallel mode), nothing is allocated per node
+    public static long perft(ChessBoardModel model, int depth) {
+        PinInfo[] pins = new PinInfo[depth + 1];
+        for (int i = 0; i < pins.length; i++) {
+            pins[i] = new PinInfo();
+        }
+        return perft(model, depth, new int[MoveGenerator.MAX_MOVES * (depth + 1)], 0, pins);
+    }
+
+    //one move buffer for the whole tree, every ply writes behind the previous ply's moves; one PinInfo per ply
+    private static long perft(ChessBoardModel model, int depth, int[] moves, int offset, PinInfo[] pinsByDepth) {
+        if (depth == 0) {
+            return 1;
+        }
+        boolean side = model.isRedTurn();
+        int end = MoveGenerator.generate(model, side, moves, offset);
+        PinInfo pins = pinsByDepth[depth];
+        pins.compute(model, side);
+        long nodes = 0;
+        for (int i = offset; i < end; i++) {
+            if (!pins.isLegal(model, moves[i])) {
+                continue;
+            }
+            if (depth == 1) {
+                nodes++;//legal is all a leaf needs to know, no make / unmake
+                continue;
+            }
+            model.makeMove(moves[i]);
+            nodes += perft(model, depth - 1, moves, end, pinsByDepth);
+            model.unmakeMove();
+        }
+        return nodes;
+    }
+
+    //per root move breakdown, handy for finding which move disagrees with another program
+    public static void divide(ChessBoardModel model, int depth) {
+        int[] moves = new int[MoveGenerator.MAX_MOVES];
+        int count = MoveGenerator.generateLegal(model, model.isRedTurn(), moves, 0);
+        long total = 0;
+        for (int i = 0; i < count; i++) {
+            model.makeMove(moves[i]);
+            long nodes = depth <= 1 ? 1 : perft(model, depth - 1);
+            model.unmakeMove();
+            total += nodes;
+            System.out.println(ChessBoardModel.toIccs(moves[i]) + ": " + nodes);
+        }
+        System.out.println("moves " + count + "  total " + total);
+    }
+
+    //root moves split over a ForkJoinPool, every task searches its own copy of the position
+    public static long perftParallel(ChessBoardModel model, int depth, int threads) {
+        if (depth <= 1) {
+            return perft(model, depth);
+        }
+        int[] moves = new int[MoveGenerator.MAX_MOVES];
+        int count = MoveGenerator.generateLegal(model, model.isRedTurn(), moves, 0);
+        List<RootTask> tasks = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            tasks.add(new RootTask(model, moves[i], depth - 1));
+        }
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        try {
+            return pool.submit(() -> {
+                long nodes = 0;
+                for (RootTask task : RecursiveTask.invokeAll(tasks)) {
+                    nodes += task.join();
+                }
+                return nodes;
+            }).join();
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    private static class RootTask extends RecursiveTask<Long> {
+        private final ChessBoardModel position;
+        private final int depth;
+
+        RootTask(ChessBoardModel root, int move, int depth) {
+            this.position = new ChessBoardModel(root);
+            this.position.makeMove(move);
+            this.depth = depth;
+        }
+
+        @Override
+        protected Long compute() {
+            return perft(position, depth);
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package edu.sustech.xiangqi.tools;
+
+import edu.sustech.xiangqi.engine.Search;
+import edu.sustech.xiangqi.engine.SearchLimits;
+import edu.sustech.xiangqi.engine.SearchResult;
+import edu.sustech.xiangqi.engine.TranspositionTable;
+import edu.sustech.xiangqi.model.ChessBoardModel;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+//fixed depth search over a position suite, once with everything on and once with one search feature switched off
+//prints nodes and time to depth for both, so the effect of a feature can be read off directly
+//usage: SearchBench [depth] [--off feature] [--hash mb]
+//features: ordering, nullmove, lmr, futility, checkext, selective (the last four together)
+public class SearchBench {
+    private static final String[][] POSITIONS = {
+            {"start", "rnbakabnr/9/1c5c1/p1p1p1p1p/9/9/P1P1P1P1P/1C5C1/9/RNBAKABNR w"},
+            {"midgame", "r1ba1a3/4kn3/2n1b4/pNp1p1p1p/4c4/6P2/P1P2R2P/1CcC5/9/2BAKAB2 w"},
+            {"cramped", "1cbak4/9/n2a5/2p1p3p/5cp2/2n2N3/6PCP/3AB4/2C6/3A1K1N1 w"},
+            {"open-files", "5a3/3k5/3aR4/9/5r3/5n3/9/3A1A3/5K3/2BC2B2 w"},
+            {"endgame-1", "CRN1k1b2/3ca4/4ba3/9/2nr5/9/9/4B4/4A4/4KA3 w"},
+            {"endgame-2", "R1N1k1b2/9/3aba3/9/2nr5/2B6/9/4B4/4A4/4KA3 w"},
+    };
+
+    public static void main(String[] args) {
+        int depth = 5;
+        String off = "ordering";
+        int hashMb = 16;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--off":
+                    off = args[++i];
+                    break;
+                case "--hash":
+                    hashMb = Integer.parseInt(args[++i]);
+                    break;
+                default:
+                    depth = Integer.parseInt(args[i]);
+            }
+        }
+
+        //warm the JIT up so the first row isn't slowed down by compilation
+        run(ChessBoardModel.fromFen(POSITIONS[0][1]), Math.min(depth, 4), hashMb, null);
+
+        long onNodes = 0, offNodes = 0, onMillis = 0, offMillis = 0;
+        System.out.println("depth " + depth + ", comparing all features on against --off " + off);
+        for (String[] position : POSITIONS) {
+            ChessBoardModel model = ChessBoardModel.fromFen(position[1]);
+            SearchResult on = run(model, depth, hashMb, null);
+            SearchResult without = run(model, depth, hashMb, off);
+            onNodes += on.getNodes();
+            offNodes += without.getNodes();
+            onMillis += on.getTimeMillis();
+            offMillis += without.getTimeMillis();
+            System.out.printf("%-12s on: %11d nodes %7d ms %s  off: %11d nodes %7d ms %s%n", position[0],
+                    on.getNodes(), on.getTimeMillis(), ChessBoardModel.toIccs(on.getBestMove()),
+                    without.getNodes(), without.getTimeMillis(), ChessBoardModel.toIccs(without.getBestMove()));
+        }
+        System.out.printf("total        on: %11d nodes %7d ms     off: %11d nodes %7d ms%n", onNodes, onMillis, offNodes, offMillis);
+        System.out.printf("with %s: %.1f%% fewer nodes, %.2fx time to depth%n", off,
+                100.0 * (offNodes - onNodes) / Math.max(1, offNodes), (double) offMillis / Math.max(1, onMillis));
+    }
+
+    private static SearchResult run(ChessBoardModel model, int depth, int hashMb, String off) {
+        Search search = new Search(model, SearchLimits.depth(depth), new AtomicBoolean(), new TranspositionTable(hashMb));
+        if (off != null) {
+            switch (off) {
+                case "ordering":
+                    search.setMoveOrdering(false);
+                    break;
+                case "nullmove":
+                    search.setNullMove(false);
+                    break;
+                case "lmr":
+                    search.setLateMoveReductions(false);
+                    break;
+                case "futility":
+                    search.setFutilityPruning(false);
+                    break;
+                case "checkext":
+                    search.setCheckExtensions(false);
+                    break;
+                case "selective":
+                    search.setNullMove(false);
+                    search.setLateMoveReductions(false);
+                    search.setFutilityPruning(false);
+                    search.setCheckExtensions(false);
+                    break;
+                default:
+                    throw new IllegalArgumentException("unknown feature: " + off);
+            }
+        }
+        return search.run();
+    }
+}
@@ -0,0 +1,69 @@
+package edu.sustech.xiangqi.tools;
+
+import edu.sustech.xiangqi.engine.LazySmpSearch;
+import edu.sustech.xiangqi.engine.SearchLimits;
+import edu.sustech.xiangqi.engine.SearchResult;
+import edu.sustech.xiangqi.engine.TranspositionTable;
+import edu.sustech.xiangqi.model.ChessBoardModel;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+//lazy SMP scaling report: time to reach a fixed depth with 1, 2, 4, 8, 16 search threads
+//every run gets a fresh table so the numbers don't profit from the previous one
+//only meaningful with as many cores as threads, beyond that the helpers just share the cpu with the main thread
+//usage: SmpScaling [depth] [--threads 1,2,4] [--hash mb]
+public class SmpScaling {
+    private static final String[][] POSITIONS = {
+            {"start", "rnbakabnr/9/1c5c1/p1p1p1p1p/9/9/P1P1P1P1P/1C5C1/9/RNBAKABNR w"},
+            {"midgame", "r1ba1a3/4kn3/2n1b4/pNp1p1p1p/4c4/6P2/P1P2R2P/1CcC5/9/2BAKAB2 w"},
+            {"endgame-1", "CRN1k1b2/3ca4/4ba3/9/2nr5/9/9/4B4/4A4/4KA3 w"},
+    };
+
+    public static void main(String[] args) {
+        int depth = 6;
+        int[] threadCounts = {1, 2, 4, 8, 16};
+        int hashMb = 64;
+        for (int i = 0; i < args.length; i++) {
+            switch (args[i]) {
+                case "--threads":
+                    String[] parts = args[++i].split(",");
+                    threadCounts = new int[parts.length];
+                    for (int j = 0; j < parts.length; j++) {
+                        threadCounts[j] = Integer.parseInt(parts[j].trim());
+                    }
+                    break;
+                case "--hash":
+                    hashMb = Integer.parseInt(args[++i]);
+                    break;
+                default:
+                    depth = Integer.parseInt(args[i]);
+            }
+        }
+
+        System.out.println("cores available: " + Runtime.getRuntime().availableProcessors() + "  depth " + depth);
+        //warm the JIT up first, otherwise the first (single thread) row pays for compilation
+        new LazySmpSearch(ChessBoardModel.fromFen(POSITIONS[0][1]), SearchLimits.depth(depth), new AtomicBoolean(), new TranspositionTable(hashMb), 1).run();
+        long[] totalMillis = new long[threadCounts.length];
+        for (String[] position : POSITIONS) {
+            ChessBoardModel model = ChessBoardModel.fromFen(position[1]);
+            for (int t = 0; t < threadCounts.length; t++) {
+                TranspositionTable tt = new TranspositionTable(hashMb);
+                LazySmpSearch search = new LazySmpSearch(model, SearchLimits.depth(depth), new AtomicBoolean(), tt, threadCounts[t]);
+                long start = System.nanoTime();
+                SearchResult result = search.run();
+                long millis = (System.nanoTime() - start) / 1_000_000;
+                totalMillis[t] += millis;
+                System.out.printf("%-10s threads %2d  %8d ms  nodes %12d  %,12.0f nps  best %s  score %d%n",
+                        position[0], threadCounts[t], millis, result.getNodes(),
+                        result.getNodes() * 1000.0 / Math.max(1, millis),
+                        ChessBoardModel.toIccs(result.getBestMove()), result.getScore());
+            }
+        }
+
+        System.out.println("threads  total ms  speedup");
+        for (int t = 0; t < threadCounts.length; t++) {
+            System.out.printf("%7d  %8d  %7.2f%n", threadCounts[t], totalMillis[t],
+                    (double) totalMillis[0] / Math.max(1, totalMillis[t]));
+        }
+    }
+}
@@ -0,0 +1,316 @@
+package edu.sustech.xiangqi.tools;
+
+import edu.sustech.xiangqi.model.AbstractPiece;
+import edu.sustech.xiangqi.model.ChessBoardModel;
+import edu.sustech.xiangqi.model.MoveGenerator;
+import edu.sustech.xiangqi.model.PieceType;
+import edu.sustech.xiangqi.model.Tablebase;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+
+//builds endgame tables (format: model.Tablebase) by retrograde analysis
+//first every position of the set is set up once: illegal ones marked, mates and stalemates scored, and the moves of
+//the rest stored as successor indices (a capture leaves the set, its result is probed from the smaller table built
+//before); then pass n = 1, 2, ... marks a position won in n plies if a successor is lost in n - 1, lost in n if every
+//successor is won in less than n; whatever is left when the passes stop finding anything is a draw
+//both steps are split into chunks of positions and run on a fork-join pool
+//usage: TablebaseGenerator <out-dir> [--threads n] [set ...]   sets like KRvKAA, default: KRvKAA KHPvK KACvK
+public final class TablebaseGenerator {
+    private static final String[] DEFAULT_SETS = {"KRvKAA", "KHPvK", "KACvK"};
+    private static final int CHUNK = 4096;//positions per fork-join leaf
+
+    private final ForkJoinPool pool;
+    private final Path outDir;
+    private final Map<String, byte[]> done = new HashMap<>();//finished tables, probed for captures
+
+    private TablebaseGenerator(ForkJoinPool pool, Path outDir) {
+        this.pool = pool;
+        this.outDir = outDir;
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.out.println("usage: TablebaseGenerator <out-dir> [--threads n] [set ...]");
+            return;
+        }
+        int threads = Runtime.getRuntime().availableProcessors();
+        List<String> sets = new ArrayList<>();
+        for (int i = 1; i < args.length; i++) {
+            if (args[i].equals("--threads")) {
+                threads = Integer.parseInt(args[++i]);
+            } else {
+                sets.add(args[i]);
+            }
+        }
+        if (sets.isEmpty()) {
+            sets.addAll(Arrays.asList(DEFAULT_SETS));
+        }
+        Path outDir = Path.of(args[0]);
+        Files.createDirectories(outDir);
+        TablebaseGenerator generator = new TablebaseGenerator(new ForkJoinPool(threads), outDir);
+        System.out.println("threads " + threads);
+        for (String set : sets) {
+            int v = set.toUpperCase().indexOf('V');
+            if (v < 0) {
+                throw new IllegalArgumentException("not a material set: " + set);
+            }
+            generator.generate(Tablebase.tableName(sortSide(set.substring(0, v)), sortSide(set.substring(v + 1))));
+        }
+        generator.pool.shutdown();
+    }
+
+    //"PKH" -> "KHP", letters in PieceType order
+    private static String sortSide(String side) {
+        StringBuilder sb = new StringBuilder();
+        for (int type = 0; type < PieceType.COUNT; type++) {
+            for (char c : side.toUpperCase().toCharArray()) {
+                if (c == PieceType.code(type)) {
+                    sb.append(c);
+                }
+            }
+        }
+        if (sb.length() != side.length() || sb.indexOf("K") != 0 || sb.lastIndexOf("K") != 0) {
+            throw new IllegalArgumentException("bad side " + side + " (one K, letters K A E H R C P)");
+        }
+        return sb.toString();
+    }
+
+    //the set and, before it, every smaller set a capture can lead to
+    private void generate(String name) throws IOException {
+        if (done.containsKey(name)) {
+            return;
+        }
+        int v = name.indexOf('v');
+        String red = name.substring(0, v), black = name.substring(v + 1);
+        for (int i = 1; i < name.length(); i++) {
+            if (i == v || i == v + 1) {
+                continue;//the generals stay
+            }
+            String subRed = i < v ? red.substring(0, i) + red.substring(i + 1) : red;
+            String subBlack = i > v ? black.substring(0, i - v - 1) + black.substring(i - v) : black;
+            if (hasAttackers(subRed) || hasAttackers(subBlack)) {
+                generate(Tablebase.tableName(subRed, subBlack));
+            }
+        }
+
+        long start = System.currentTimeMillis();
+        Tablebase.Layout layout = new Tablebase.Layout(name);
+        byte[] codes = new byte[layout.size()];
+        Tablebase smaller = Tablebase.ofArrays(done);
+        int chunkCount = (codes.length + CHUNK - 1) / CHUNK;
+        Chunk[] chunks = new Chunk[chunkCount];
+        pool.invoke(new InitTask(layout, smaller, codes, chunks, 0, chunkCount));
+
+        //no pass can find anything new once two in a row found nothing and every capture result has been seen
+        int maxCaptureDistance = 0;
+        for (Chunk c : chunks) {
+            maxCaptureDistance = Math.max(maxCaptureDistance, c.maxCaptureDistance);
+        }
+        int idle = 0;
+        int pass = 1;
+        for (; idle < 2 || pass <= maxCaptureDistance + 1; pass++) {
+            if (pass > Tablebase.MAX_DISTANCE) {
+                throw new IllegalStateException(name + ": mate longer than " + Tablebase.MAX_DISTANCE + " plies");
+            }
+            long found = pool.invoke(new PassTask(codes, chunks, 0, chunkCount, pass));
+            idle = found == 0 ? idle + 1 : 0;
+        }
+
+        Tablebase.write(outDir.resolve(name + Tablebase.EXTENSION), codes);
+        done.put(name, codes);
+        report(name, codes, System.currentTimeMillis() - start);
+    }
+
+    private static boolean hasAttackers(String side) {
+        for (char c : side.toCharArray()) {
+            if (c == 'H' || c == 'R' || c == 'C' || c == 'P') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void report(String name, byte[] codes, long millis) {
+        long[] count = new long[4];//legal, won, lost, drawn (for the side to move)
+        int longest = 0;
+        for (byte b : codes) {
+            int code = b & 0xFF;
+            if (code == Tablebase.ILLEGAL) {
+                continue;
+            }
+            count[0]++;
+            if (Tablebase.isWin(code)) {
+                count[1]++;
+                longest = Math.max(longest, Tablebase.distance(code));
+            } else if (Tablebase.isLoss(code)) {
+                count[2]++;
+                longest = Math.max(longest, Tablebase.distance(code));
+            } else {
+                count[3]++;
+            }
+        }
+        System.out.printf("%-8s %,10d positions %,10d legal  won %,10d  lost %,10d  drawn %,10d  longest mate %3d plies  %6d ms%n",
+                name, codes.length, count[0], count[1], count[2], count[3], longest, millis);
+    }
+
+    //successors of the positions from..from + length, compressed rows: moves of position i are
+    //children[offsets[i - from] .. offsets[i - from + 1]), an index into this table or -1 - code for a capture
+    private static class Chunk {
+        final int from;
+        final int[] offsets;
+        final int[] children;
+        final int maxCaptureDistance;
+
+        Chunk(int from, int[] offsets, int[] children, int maxCaptureDistance) {
+            this.from = from;
+            this.offsets = offsets;
+            this.children = children;
+            this.maxCaptureDistance = maxCaptureDistance;
+        }
+    }
+
+    private static class InitTask extends RecursiveAction {
+        private final Tablebase.Layout layout;
+        private final Tablebase smaller;
+        private final byte[] codes;
+        private final Chunk[] chunks;
+        private final int lo, hi;
+
+        InitTask(Tablebase.Layout layout, Tablebase smaller, byte[] codes, Chunk[] chunks, int lo, int hi) {
+            this.layout = layout;
+            this.smaller = smaller;
+            this.codes = codes;
+            this.chunks = chunks;
+            this.lo = lo;
+            this.hi = hi;
+        }
+
+        @Override
+        protected void compute() {
+            if (hi - lo > 1) {
+                int mid = (lo + hi) >>> 1;
+                invokeAll(new InitTask(layout, smaller, codes, chunks, lo, mid),
+                        new InitTask(layout, smaller, codes, chunks, mid, hi));
+                return;
+            }
+            ChessBoardModel model = new ChessBoardModel();//one board per leaf, set up again for every position
+            int[] moves = new int[MoveGenerator.MAX_MOVES];
+            int from = lo * CHUNK, to = Math.min(codes.length, from + CHUNK);
+            int[] offsets = new int[to - from + 1];
+            int[] children = new int[(to - from) * 16];
+            int size = 0;
+            int maxCaptureDistance = 0;
+            for (int index = from; index < to; index++) {
+                offsets[index - from] = size;
+                List<AbstractPiece> pieces = layout.decode(index);
+                if (pieces == null) {
+                    codes[index] = (byte) Tablebase.ILLEGAL;
+                    continue;
+                }
+                boolean redToMove = layout.isRedToMove(index);
+                model.setPosition(pieces, redToMove);
+                if (model.generalInCheck(!redToMove)) {
+                    codes[index] = (byte) Tablebase.ILLEGAL;//the side that just moved can't be in check
+                    continue;
+                }
+                int count = MoveGenerator.generateLegal(model, redToMove, moves, 0);
+                if (count == 0) {
+                    //mated (distance 0) or stalemated (draw)
+                    codes[index] = (byte) (model.generalInCheck(redToMove) ? 1 : Tablebase.DRAW);
+                    continue;
+                }
+                if (size + count > children.length) {
+                    children = Arrays.copyOf(children, Math.max(children.length * 2, size + count));
+                }
+                for (int i = 0; i < count; i++) {
+                    int target = ChessBoardModel.moveTo(moves[i]);
+                    boolean capture = model.getPieceAt(target / 9, target % 9) != null;
+                    model.makeMove(moves[i]);
+                    if (capture) {
+                        int code = smaller.probe(model);
+                        if (code == Tablebase.NOT_FOUND || code == Tablebase.ILLEGAL) {
+                            throw new IllegalStateException("capture into a set without table: " + model.toFen());
+                        }
+                        children[size++] = -1 - code;
+                        if (code != Tablebase.DRAW) {
+                            maxCaptureDistance = Math.max(maxCaptureDistance, Tablebase.distance(code));
+                        }
+                    } else {
+                        children[size++] = layout.index(model, false);
+                    }
+                    model.unmakeMove();
+                }
+            }
+            offsets[to - from] = size;
+            chunks[lo] = new Chunk(from, offsets, Arrays.copyOf(children, size), maxCaptureDistance);
+        }
+    }
+
+    //one retrograde pass over chunks lo..hi, returns the number of positions it resolved
+    //codes written in this pass (distance == pass) are ignored by the other positions of the same pass, so chunks
+    //running at the same time never depend on each other's progress
+    private static class PassTask extends RecursiveTask<Long> {
+        private final byte[] codes;
+        private final Chunk[] chunks;
+        private final int lo, hi;
+        private final int pass;
+
+        PassTask(byte[] codes, Chunk[] chunks, int lo, int hi, int pass) {
+            this.codes = codes;
+            this.chunks = chunks;
+            this.lo = lo;
+            this.hi = hi;
+            this.pass = pass;
+        }
+
+        @Override
+        protected Long compute() {
+            if (hi - lo > 1) {
+                int mid = (lo + hi) >>> 1;
+                PassTask left = new PassTask(codes, chunks, lo, mid, pass);
+                left.fork();
+                long right = new PassTask(codes, chunks, mid, hi, pass).compute();
+                return left.join() + right;
+            }
+            Chunk chunk = chunks[lo];
+            boolean winPass = pass % 2 == 1;//odd distances are wins for the side to move
+            long found = 0;
+            for (int i = 0; i + 1 < chunk.offsets.length; i++) {
+                int index = chunk.from + i;
+                int begin = chunk.offsets[i], end = chunk.offsets[i + 1];
+                if (codes[index] != Tablebase.DRAW || begin == end) {
+                    continue;//resolved, illegal, or a stalemate
+                }
+                boolean resolved = !winPass;
+                for (int k = begin; k < end; k++) {
+                    int child = chunk.children[k];
+                    int code = child >= 0 ? codes[child] & 0xFF : -1 - child;
+                    boolean known = code != Tablebase.DRAW && Tablebase.distance(code) < pass;
+                    if (winPass && known && Tablebase.isLoss(code)) {
+                        resolved = true;//a move into a lost position
+                        break;
+                    }
+                    if (!winPass && !(known && Tablebase.isWin(code))) {
+                        resolved = false;//a move that doesn't (yet) lose
+                        break;
+                    }
+                }
+                if (resolved) {
+                    codes[index] = (byte) (pass + 1);
+                    found++;
+                }
+            }
+            return found;
+        }
+    }
+}
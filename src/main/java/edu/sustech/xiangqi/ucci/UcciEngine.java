@@ -0,0 +1,305 @@
+package edu.sustech.xiangqi.ucci;
+
+import edu.sustech.xiangqi.engine.Engine;
+import edu.sustech.xiangqi.engine.OpeningBook;
+import edu.sustech.xiangqi.engine.SearchLimits;
+import edu.sustech.xiangqi.engine.SearchResult;
+import edu.sustech.xiangqi.engine.TimeManager;
+import edu.sustech.xiangqi.model.ChessBoardModel;
+import edu.sustech.xiangqi.model.MoveGenerator;
+import edu.sustech.xiangqi.model.Tablebase;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintStream;
+import java.nio.file.Path;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+
+//headless engine speaking UCCI over stdin / stdout, for Xiangqi GUIs and batch tools (no Swing involved)
+//the calling thread only reads and parses commands, searches run on the Engine's own thread,
+//so "stop" is seen right away and the search returns its best move so far
+//supported: ucci, isready, setoption (hashsize, threads, bookfiles, egtbpaths), position {fen ... | startpos} [moves ...],
+//go [ponder] {depth n | nodes n | time ms [movestogo n] [increment ms] | infinite}, stop, ponderhit, quit
+public class UcciEngine {
+    private static final String START_FEN = "rnbakabnr/9/1c5c1/p1p1p1p1p/9/9/P1P1P1P1P/1C5C1/9/RNBAKABNR w - - 0 1";
+    private final PrintStream out;
+    private final Engine engine = new Engine();
+    private ChessBoardModel position = ChessBoardModel.fromFen(START_FEN);
+
+    //search state, guarded by this: bestmove may only be sent once, and not before stop / ponderhit in
+    //infinite and ponder mode, even if the search itself is over
+    private int searchId;
+    private boolean searching;
+    private boolean holdBestMove;
+    private SearchResult heldResult;
+    private SearchLimits ponderLimits;//the move's time limits, applied on ponderhit
+
+    public UcciEngine(PrintStream out) {
+        this.out = out;
+    }
+
+    public static void main(String[] args) throws IOException {
+        new UcciEngine(System.out).run(new InputStreamReader(System.in, StandardCharsets.UTF_8));
+    }
+
+    public void run(Reader input) throws IOException {
+        BufferedReader reader = new BufferedReader(input);
+        String line;
+        while ((line = reader.readLine()) != null) {
+            if (!handle(line.trim())) {
+                break;
+            }
+        }
+        engine.shutdown();
+    }
+
+    //one command line, false once the engine should exit
+    public boolean handle(String line) {
+        String[] tokens = line.split("\\s+");
+        switch (tokens[0]) {
+            case "ucci":
+                send("id name XiangqiKevinJohn");
+                send("id author KvNrysn");
+                send("option hashsize type spin min 1 max 4096 default " + Engine.DEFAULT_HASH_MB);
+                send("option threads type spin min 1 max 256 default 1");
+                send("option bookfiles type string default <empty>");
+                send("option egtbpaths type string default <empty>");
+                send("ucciok");
+                break;
+            case "isready":
+                send("readyok");
+                break;
+            case "setoption":
+                setOption(tokens);
+                break;
+            case "position":
+                setPosition(tokens);
+                break;
+            case "go":
+                go(tokens);
+                break;
+            case "stop":
+                stop();
+                break;
+            case "ponderhit":
+                ponderHit();
+                break;
+            case "quit":
+                engine.stop();
+                send("bye");
+                return false;
+            default:
+                break;//unknown commands (banmoves, probe, empty lines ...) are ignored, as the protocol asks
+        }
+        return true;
+    }
+
+    //"setoption hashsize 64" (UCCI) or "setoption name Hash value 64" (UCI style), unknown options are ignored
+    private void setOption(String[] tokens) {
+        String name;
+        String value;
+        if (tokens.length >= 5 && tokens[1].equals("name") && tokens[3].equals("value")) {
+            name = tokens[2];
+            value = tokens[4];
+        } else if (tokens.length >= 3) {
+            name = tokens[1];
+            value = tokens[2];
+        } else {
+            return;
+        }
+        try {
+            switch (name.toLowerCase()) {
+                case "hashsize":
+                case "hash":
+                    engine.setHashSize(Integer.parseInt(value));
+                    break;
+                case "threads":
+                    engine.setThreads(Integer.parseInt(value));
+                    break;
+                case "bookfiles":
+                    engine.setBook(value.equals("<empty>") ? null : OpeningBook.open(Path.of(value)));
+                    break;
+                case "egtbpaths":
+                    Tablebase.setDefault(value.equals("<empty>") ? null : Tablebase.open(Path.of(value)));
+                    break;
+                default:
+                    break;
+            }
+        } catch (NumberFormatException e) {
+            send("info string bad value for " + name + ": " + value);
+        } catch (IOException e) {
+            send("info string can't open " + value + ": " + e.getMessage());
+        }
+    }
+
+    private void setPosition(String[] tokens) {
+        int i = 1;
+        String fen;
+        if (i < tokens.length && tokens[i].equals("startpos")) {
+            fen = START_FEN;
+            i++;
+        } else if (i < tokens.length && tokens[i].equals("fen")) {
+            StringBuilder sb = new StringBuilder();
+            for (i++; i < tokens.length && !tokens[i].equals("moves"); i++) {
+                sb.append(tokens[i]).append(' ');
+            }
+            fen = sb.toString();
+        } else {
+            send("info string bad position command");
+            return;
+        }
+        ChessBoardModel model;
+        try {
+            model = ChessBoardModel.fromFen(fen);
+        } catch (IllegalArgumentException e) {
+            send("info string " + e.getMessage());
+            return;
+        }
+        if (i < tokens.length && tokens[i].equals("moves")) {
+            for (i++; i < tokens.length; i++) {
+                int move = ChessBoardModel.fromIccs(tokens[i]);
+                if (!MoveGenerator.isLegal(model, move)) {
+                    send("info string illegal move " + tokens[i] + ", ignoring the rest");
+                    break;
+                }
+                model.makeMove(move);
+            }
+        }
+        position = model;
+    }
+
+    private void go(String[] tokens) {
+        boolean ponder = false;
+        boolean infinite = false;
+        int depth = 0;
+        long nodes = 0;
+        long time = -1;
+        long increment = 0;
+        int movesToGo = 0;
+        try {
+            for (int i = 1; i < tokens.length; i++) {
+                switch (tokens[i]) {
+                    case "ponder":
+                        ponder = true;
+                        break;
+                    case "infinite":
+                        infinite = true;
+                        break;
+                    case "depth":
+                        depth = Integer.parseInt(tokens[++i]);
+                        break;
+                    case "nodes":
+                        nodes = Long.parseLong(tokens[++i]);
+                        break;
+                    case "time":
+                        time = Long.parseLong(tokens[++i]);
+                        break;
+                    case "increment":
+                        increment = Long.parseLong(tokens[++i]);
+                        break;
+                    case "movestogo":
+                        movesToGo = Integer.parseInt(tokens[++i]);
+                        break;
+                    default:
+                        break;//opptime, opptime's friends and "draw" are not used
+                }
+            }
+        } catch (RuntimeException e) {
+            send("info string bad go command");
+            return;
+        }
+
+        //time left on the clock -> soft / hard time for this move
+        SearchLimits limits = new SearchLimits(depth, nodes, 0);
+        if (time >= 0) {
+            SearchLimits clock = TimeManager.allocate(time, increment, 0, movesToGo, position.getFullmoveNumber());
+            limits = new SearchLimits(depth, nodes, clock.getTimeMillis(), clock.getSoftTimeMillis());
+        }
+        SearchLimits moveLimits = limits;
+        //pondering runs without limits, the time only starts counting on ponderhit
+        if (ponder || infinite) {
+            limits = SearchLimits.infinite();
+        }
+
+        int id;
+        synchronized (this) {
+            if (searching) {
+                send("info string already searching");
+                return;
+            }
+            id = ++searchId;
+            searching = true;
+            holdBestMove = ponder || infinite;
+            heldResult = null;
+            ponderLimits = moveLimits;
+        }
+        engine.think(position, limits, this::sendInfo)
+                .whenComplete((result, error) -> searchFinished(id, result));
+    }
+
+    private void sendInfo(SearchResult result) {
+        long nps = result.getTimeMillis() > 0 ? result.getNodes() * 1000 / result.getTimeMillis() : 0;
+        send("info depth " + result.getDepth() + " score " + result.getScore() + " time " + result.getTimeMillis()
+                + " nodes " + result.getNodes() + " nps " + nps + " pv " + result.pvString());
+    }
+
+    private synchronized void searchFinished(int id, SearchResult result) {
+        if (id != searchId) {
+            return;
+        }
+        if (holdBestMove) {
+            heldResult = result;//infinite / ponder: wait for stop or ponderhit
+        } else {
+            sendBestMove(result);
+        }
+    }
+
+    private void stop() {
+        engine.stop();
+        synchronized (this) {
+            holdBestMove = false;
+            if (heldResult != null) {
+                sendBestMove(heldResult);
+            }
+        }
+    }
+
+    //the opponent played the move we pondered on: from now on it's a normal search with the move's time budget
+    private synchronized void ponderHit() {
+        if (!searching) {
+            return;
+        }
+        holdBestMove = false;
+        if (heldResult != null) {
+            sendBestMove(heldResult);
+            return;
+        }
+        if (ponderLimits.getTimeMillis() > 0) {
+            engine.setTimeLimit(ponderLimits.getSoftTimeMillis(), ponderLimits.getTimeMillis());
+        }
+    }
+
+    private void sendBestMove(SearchResult result) {
+        searching = false;
+        heldResult = null;
+        if (result == null || !result.hasMove()) {
+            send("nobestmove");
+            return;
+        }
+        int[] pv = result.getPv();
+        if (pv.length >= 2 && pv[0] == result.getBestMove()) {
+            send("bestmove " + ChessBoardModel.toIccs(pv[0]) + " ponder " + ChessBoardModel.toIccs(pv[1]));
+        } else {
+            send("bestmove " + ChessBoardModel.toIccs(result.getBestMove()));
+        }
+    }
+
+    private void send(String line) {
+        synchronized (out) {
+            out.println(line);
+            out.flush();
+        }
+    }
+}
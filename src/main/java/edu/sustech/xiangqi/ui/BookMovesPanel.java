@@ -0,0 +1,146 @@
+package edu.sustech.xiangqi.ui;
+
+import edu.sustech.xiangqi.engine.OpeningBook;
+import edu.sustech.xiangqi.model.AbstractPiece;
+import edu.sustech.xiangqi.model.ChessBoardModel;
+
+import javax.swing.*;
+import javax.swing.border.EmptyBorder;
+import java.awt.*;
+import java.util.List;
+
+//opening book moves for the current position, under the move record: move, share of the book weight, wins/draws/losses
+public class BookMovesPanel extends JPanel {
+    private static final Color GOLD = new Color(212, 175, 55);//same look as MoveHistoryPanel
+    private static final Color BG = new Color(14, 14, 14);
+    private static final int MAX_ROWS = 6;
+
+    private final OpeningBook book;//null = no book file
+    private JPanel tableBody;
+    private JLabel footerLabel;
+
+    public BookMovesPanel(OpeningBook book) {
+        this.book = book;
+        setLayout(new BorderLayout());
+        setOpaque(false);
+        setPreferredSize(new Dimension(320, 230));
+
+        add(buildHeader(), BorderLayout.NORTH);
+        add(buildTable(), BorderLayout.CENTER);
+        add(buildFooter(), BorderLayout.SOUTH);
+    }
+
+    @Override
+    protected void paintComponent(Graphics g) {
+        Graphics2D g2 = (Graphics2D) g.create();
+        g2.setRenderingHint(RenderingHints.KEY_ANTIALIASING, RenderingHints.VALUE_ANTIALIAS_ON);
+
+        int arc = 18;
+
+        g2.setColor(BG);
+        g2.fillRoundRect(6, 6, getWidth() - 12, getHeight() - 12, arc, arc);
+
+        g2.setStroke(new BasicStroke(1.5f));
+        g2.setColor(GOLD);
+        g2.drawRoundRect(6, 6, getWidth() - 12, getHeight() - 12, arc, arc);
+
+        g2.dispose();
+        super.paintComponent(g);
+    }
+
+    private JComponent buildHeader() {
+        JPanel header = new JPanel();
+        header.setLayout(new BoxLayout(header, BoxLayout.Y_AXIS));
+        header.setOpaque(false);
+        header.setBorder(new EmptyBorder(16, 18, 4, 18));
+
+        JLabel title = new JLabel("Book Moves");
+        title.setFont(new Font("Serif", Font.BOLD, 16));
+        title.setForeground(Color.WHITE);
+        title.setAlignmentX(Component.CENTER_ALIGNMENT);
+
+        JPanel columns = new JPanel(new GridLayout(1, 3));//move, share, results
+        columns.setOpaque(false);
+        columns.setBorder(new EmptyBorder(8, 6, 2, 6));
+        columns.add(columnLabel("Move"));
+        columns.add(columnLabel("Share"));
+        columns.add(columnLabel("W / D / L"));
+
+        header.add(title);
+        header.add(columns);
+        return header;
+    }
+
+    private JLabel columnLabel(String text) {
+        JLabel l = new JLabel(text, SwingConstants.CENTER);
+        l.setFont(new Font("Serif", Font.BOLD, 13));
+        l.setForeground(GOLD);
+        return l;
+    }
+
+    private JComponent buildTable() {
+        tableBody = new JPanel();
+        tableBody.setLayout(new BoxLayout(tableBody, BoxLayout.Y_AXIS));
+        tableBody.setOpaque(false);
+        tableBody.setBorder(new EmptyBorder(0, 10, 0, 10));
+        return tableBody;
+    }
+
+    private JComponent buildFooter() {
+        JPanel footer = new JPanel(new BorderLayout());
+        footer.setOpaque(false);
+        footer.setBorder(new EmptyBorder(4, 18, 14, 18));
+
+        footerLabel = new JLabel(book == null ? "No opening book loaded" : " ");
+        footerLabel.setFont(new Font("Serif", Font.PLAIN, 12));
+        footerLabel.setForeground(GOLD);
+
+        footer.add(footerLabel, BorderLayout.WEST);
+        return footer;
+    }
+
+    //show the book moves of the position (call on the EDT after every move)
+    public void update(ChessBoardModel model) {
+        if (book == null) {
+            return;
+        }
+        tableBody.removeAll();
+
+        List<OpeningBook.Entry> entries = book.lookup(model);
+        int total = 0;
+        for (OpeningBook.Entry e : entries) {
+            total += e.weight;
+        }
+        for (int i = 0; i < entries.size() && i < MAX_ROWS; i++) {
+            OpeningBook.Entry e = entries.get(i);
+            tableBody.add(createRow(model, e, total));
+        }
+        footerLabel.setText(entries.isEmpty() ? "Out of book" : entries.size() + " book moves");
+
+        tableBody.revalidate();
+        tableBody.repaint();
+    }
+
+    private JPanel createRow(ChessBoardModel model, OpeningBook.Entry e, int total) {
+        JPanel row = new JPanel(new GridLayout(1, 3));
+        row.setOpaque(false);
+        row.setBorder(new EmptyBorder(3, 4, 3, 4));
+        row.setMaximumSize(new Dimension(Integer.MAX_VALUE, 24));
+
+        int from = ChessBoardModel.moveFrom(e.move);
+        AbstractPiece p = model.getPieceAt(from / ChessBoardModel.getCols(), from % ChessBoardModel.getCols());
+        Color side = p.isRed() ? new Color(200, 0, 0) : Color.LIGHT_GRAY;
+
+        row.add(cell(p.getName() + " " + ChessBoardModel.toIccs(e.move), side));
+        row.add(cell(total > 0 ? Math.round(100.0 * e.weight / total) + "%" : "-", Color.WHITE));
+        row.add(cell(e.wins + " / " + e.draws + " / " + e.losses, Color.LIGHT_GRAY));
+        return row;
+    }
+
+    private JLabel cell(String text, Color color) {
+        JLabel l = new JLabel(text, SwingConstants.CENTER);
+        l.setFont(new Font("Serif", Font.PLAIN, 13));
+        l.setForeground(color);
+        return l;
+    }
+}
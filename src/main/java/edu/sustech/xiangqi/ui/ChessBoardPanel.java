@@ -1,9 +1,17 @@
 package edu.sustech.xiangqi.ui;
 
 import edu.sustech.xiangqi.audio.AudioManager;
+import edu.sustech.xiangqi.engine.Engine;
+import edu.sustech.xiangqi.engine.OpeningBook;
+import edu.sustech.xiangqi.engine.SearchLimits;
+import edu.sustech.xiangqi.engine.SearchResult;
+import edu.sustech.xiangqi.engine.TimeManager;
 import edu.sustech.xiangqi.model.AbstractPiece;
 import edu.sustech.xiangqi.model.ChessBoardModel;
+import edu.sustech.xiangqi.model.GameClock;
+import edu.sustech.xiangqi.model.MoveGenerator;
 import edu.sustech.xiangqi.model.SoldierPiece;
+import edu.sustech.xiangqi.model.Tablebase;
 
 import javax.swing.*;
 import java.awt.*;
@@ -13,6 +21,10 @@ import java.util.ArrayList;
 import java.util.List;
 import java.awt.Point;
 import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.CompletionException;
 
 public class ChessBoardPanel extends JPanel {
     private JPanel topBar;
@@ -21,6 +33,10 @@ public class ChessBoardPanel extends JPanel {
     private JPanel basePanel;
 
     private MoveHistoryPanel moveHistoryPanel;
+    private BookMovesPanel bookMovesPanel;
+    private JPanel sidePanel;//move record with the book moves below it, slides in from the right
+    private static final Path BOOK_FILE = Path.of("data/book.bin");//optional, built with tools.BookBuilder
+    private static final Path TABLEBASE_DIR = Path.of("data/tablebases");//optional, built with tools.TablebaseGenerator
     private boolean historyVisible = false;
     private Timer historySlideTimer;
     private int historyOffsetX = 0;
@@ -70,8 +86,27 @@ public class ChessBoardPanel extends JPanel {
     private final ChessBoardModel model;
     private final boolean isGuest;
 
+    //game clock: 10 minutes each plus 5 seconds per move, the countdown sits in the top bar
+    //VS COMPUTER games always have one (the engine's time comes from it), two player games only if switched on in the
+    //settings; a loaded game keeps the clock it was saved with. no clock = untimed, no countdown shown
+    private static boolean timedTwoPlayerGames = false;
+    private static final long CLOCK_BASE_MS = 10 * 60_000;
+    private static final long CLOCK_INCREMENT_MS = 5_000;
+    private static final int CLOCK_TICK_MS = 100;
+    private Timer clockTimer;
+    private JLabel redClockLabel;
+    private JLabel blackClockLabel;
+
+    //computer opponent (null in a two player game), it plays black and thinks on its own thread
+    //how long it thinks comes from its clock (TimeManager)
+    private static final boolean COMPUTER_IS_RED = false;
+    private final Engine engine;
+    private boolean engineThinking = false;
+    private SearchResult pendingEngineMove = null;//arrived while paused, played on resume
+
     private AbstractPiece selectedPiece = null;
     private final List<Point> validMovePoints = new ArrayList<>();
+    private final int[] pieceMoveBuffer = new int[MoveGenerator.MAX_PIECE_MOVES];
 
     private Timer illegalMoveTimer;
 
@@ -104,6 +139,10 @@ public class ChessBoardPanel extends JPanel {
     }
 
     public ChessBoardPanel(ChessBoardModel model, boolean isGuest, String username, Runnable onRestartGame, Runnable onQuitToMenu) {
+        this(model, isGuest, username, false, onRestartGame, onQuitToMenu);
+    }
+
+    public ChessBoardPanel(ChessBoardModel model, boolean isGuest, String username, boolean vsComputer, Runnable onRestartGame, Runnable onQuitToMenu) {
         moveHistoryPanel = new MoveHistoryPanel();
         moveHistoryPanel.setPreferredSize(new Dimension(0, getHeight()));
         moveHistoryPanel.setVisible(false);
@@ -114,6 +153,12 @@ public class ChessBoardPanel extends JPanel {
         this.username = username;
         this.onRestartGame = onRestartGame;
         this.onQuitToMenu = onQuitToMenu;
+        this.engine = vsComputer ? new Engine() : null;
+        OpeningBook book = openBook();
+        openTablebases();
+        if (engine != null) {
+            engine.setBook(book);
+        }
 
         setLayout(new BorderLayout());
 
@@ -134,10 +179,24 @@ public class ChessBoardPanel extends JPanel {
 
         setPreferredSize(new Dimension(boardWidth + SIDE_PADDING * 2, boardHeight));
 
+        if (model.getClock() == null && (vsComputer || timedTwoPlayerGames)) {
+            model.setClock(GameClock.fischer(CLOCK_BASE_MS, CLOCK_INCREMENT_MS));
+        }
+        if (model.getClock() != null) {
+            model.getClock().start(model.isRedTurn());
+        }
+
         buildTopBar();
+        startClockTimer();
         moveHistoryPanel = new MoveHistoryPanel();
-        moveHistoryPanel.setVisible(false);
-        basePanel.add(moveHistoryPanel, BorderLayout.EAST);
+        bookMovesPanel = new BookMovesPanel(book);
+        bookMovesPanel.update(model);
+        sidePanel = new JPanel(new BorderLayout());
+        sidePanel.setOpaque(false);
+        sidePanel.add(moveHistoryPanel, BorderLayout.CENTER);
+        sidePanel.add(bookMovesPanel, BorderLayout.SOUTH);
+        sidePanel.setVisible(false);
+        basePanel.add(sidePanel, BorderLayout.EAST);
         hookMouse();
         rebuildCapturedFromModel();
     }
@@ -169,6 +228,18 @@ public class ChessBoardPanel extends JPanel {
         leftColumn.add(turnLabel);
         leftColumn.add(feedbackLabel);
 
+        JPanel clockColumn = new JPanel(new FlowLayout(FlowLayout.CENTER, 24, 6));
+        clockColumn.setOpaque(false);
+        if (model.getClock() != null) {
+            redClockLabel = new JLabel();
+            redClockLabel.setFont(new Font("Monospaced", Font.BOLD, 18));
+            blackClockLabel = new JLabel();
+            blackClockLabel.setFont(new Font("Monospaced", Font.BOLD, 18));
+            updateClockLabels();
+            clockColumn.add(redClockLabel);
+            clockColumn.add(blackClockLabel);
+        }
+
         JPanel rightColumn = new JPanel(new FlowLayout(FlowLayout.RIGHT, 0, 0));
         rightColumn.setOpaque(false);
         rightColumn.add(pauseButton);
@@ -177,6 +248,7 @@ public class ChessBoardPanel extends JPanel {
         hudPanel.setOpaque(false);
         hudPanel.setBorder(BorderFactory.createEmptyBorder(12, 16, 0, 16));
         hudPanel.add(leftColumn, BorderLayout.WEST);
+        hudPanel.add(clockColumn, BorderLayout.CENTER);
         hudPanel.add(rightColumn, BorderLayout.EAST);
 
         layeredPane.add(hudPanel, JLayeredPane.DEFAULT_LAYER);
@@ -264,7 +336,7 @@ public class ChessBoardPanel extends JPanel {
 
         if (historyVisible) {
             historyOffsetX = 0;
-            moveHistoryPanel.setVisible(true);
+            sidePanel.setVisible(true);
         }
 
         int end = historyVisible ? HISTORY_WIDTH : 0;
@@ -276,14 +348,14 @@ public class ChessBoardPanel extends JPanel {
                 historyOffsetX = Math.max(end, historyOffsetX - 24);
             }
 
-            moveHistoryPanel.setPreferredSize(new Dimension(historyOffsetX, getHeight()));
-            moveHistoryPanel.revalidate();   // important: revalidate the panel itself too
+            sidePanel.setPreferredSize(new Dimension(historyOffsetX, getHeight()));
+            sidePanel.revalidate();   // important: revalidate the panel itself too
             revalidate();
             repaint();
 
             if (historyOffsetX == end) {
                 historySlideTimer.stop();
-                if (!historyVisible) moveHistoryPanel.setVisible(false);
+                if (!historyVisible) sidePanel.setVisible(false);
             }
         });
         historySlideTimer.start();
@@ -293,13 +365,17 @@ public class ChessBoardPanel extends JPanel {
         addMouseListener(new MouseAdapter() {
             @Override
             public void mouseClicked(MouseEvent e) {
-                if (isPaused || isGameOver || turnLocked || moveAnimating) return;
+                if (isPaused || isGameOver || turnLocked || moveAnimating || engineThinking) return;
                 handleMouseClick(e.getX(), e.getY());
             }
         });
     }
 
     private void updateTurnLabel() {
+        if (engineThinking) {
+            turnLabel.setText("Computer is thinking...");
+            return;
+        }
         turnLabel.setText(model.isRedTurn() ? "Red to move" : "Black to move");
     }
 
@@ -325,6 +401,9 @@ public class ChessBoardPanel extends JPanel {
     public void pauseGame() {
         if (isPaused || isGameOver || moveAnimating) return;
         isPaused = true;
+        if (model.getClock() != null) {
+            model.getClock().pause();
+        }
         showPauseOverlay();
         repaint();
     }
@@ -332,8 +411,17 @@ public class ChessBoardPanel extends JPanel {
     public void resumeGame() {
         if (isGameOver) return;
         isPaused = false;
+        if (model.getClock() != null) {
+            model.getClock().resume();
+        }
         removePauseOverlay();
         repaint();
+
+        if (pendingEngineMove != null) {
+            SearchResult result = pendingEngineMove;
+            pendingEngineMove = null;
+            playEngineMove(result);
+        }
     }
 
     private void showPauseOverlay() {
@@ -396,6 +484,8 @@ public class ChessBoardPanel extends JPanel {
 
     private void restartGame() {
         closePauseOverlayIfOpen();
+        stopEngine();
+        stopClockTimer();
         onRestartGame.run();
     }
 
@@ -415,6 +505,8 @@ public class ChessBoardPanel extends JPanel {
             String path = "data/saves/" + username + ".save";
             model.saveGame(path);
         }
+        stopEngine();
+        stopClockTimer();
 
         if (onQuitToMenu != null) {
             onQuitToMenu.run();
@@ -521,6 +613,7 @@ public class ChessBoardPanel extends JPanel {
             repaint();
             return;
         }
+        notifyEngine(fromRow, fromCol, row, col);
         startMoveAnimation(movingPiece, fromRow, fromCol, row, col, beforeMove);
     }
 
@@ -541,6 +634,7 @@ public class ChessBoardPanel extends JPanel {
             showIllegalFeedback("Illegal move");
             return;
         }
+        notifyEngine(fromRow, fromCol, row, col);
 
         startMoveAnimation(movingPiece, fromRow, fromCol, row, col, beforeMove);
     }
@@ -584,6 +678,7 @@ public class ChessBoardPanel extends JPanel {
         }
         if (moveHistoryPanel != null) {
             moveHistoryPanel.updateMoves(model.getMoveHistory());
+            bookMovesPanel.update(model);
         }
 
         handlePostMoveUI();
@@ -591,8 +686,176 @@ public class ChessBoardPanel extends JPanel {
 
         animPiece = null;
         repaint();
+
+        startEngineTurnIfNeeded();
+    }
+
+    private void startEngineTurnIfNeeded() {
+        if (engine == null || isGameOver || engineThinking || model.isRedTurn() != COMPUTER_IS_RED) return;
+
+        engineThinking = true;
+        updateTurnLabel();
+        //search runs on the engine thread, the result comes back to the EDT before touching the board
+        GameClock clock = model.getClock();
+        long byoyomi = clock.getPeriods(COMPUTER_IS_RED) > 0 ? clock.getByoyomi() : 0;
+        SearchLimits limits = TimeManager.allocate(clock.getMainTime(COMPUTER_IS_RED), clock.getIncrement(), byoyomi,
+                0, model.getFullmoveNumber());
+        //a failed search (or a failed ponder search taken over) must not leave engineThinking set, that blocks the board
+        engine.think(model, limits, null)
+                .whenComplete((result, error) -> SwingUtilities.invokeLater(() -> {
+                    if (error != null) {
+                        onEngineError(error);
+                    } else {
+                        onEngineResult(result);
+                    }
+                }));
+    }
+
+    private void onEngineError(Throwable error) {
+        engineThinking = false;
+        updateTurnLabel();
+        Throwable cause = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+        System.out.println("Engine search failed: " + cause);
+        if (isGameOver || engine.isShutdown()) return;
+
+        int retry = JOptionPane.showConfirmDialog(
+                this,
+                "The computer could not find a move (" + cause.getMessage() + ").\nTry again?",
+                "Engine Error",
+                JOptionPane.YES_NO_OPTION,
+                JOptionPane.ERROR_MESSAGE
+        );
+        if (retry == JOptionPane.YES_OPTION) {
+            startEngineTurnIfNeeded();
+        }
+    }
+
+    private void onEngineResult(SearchResult result) {
+        engineThinking = false;
+        updateTurnLabel();
+        if (isGameOver || engine.isShutdown() || !result.hasMove()) return;//left the game while it was thinking
+
+        if (isPaused) {
+            pendingEngineMove = result;
+            return;
+        }
+        playEngineMove(result);
+    }
+
+    private void playEngineMove(SearchResult result) {
+        int from = ChessBoardModel.moveFrom(result.getBestMove());
+        int to = ChessBoardModel.moveTo(result.getBestMove());
+        int cols = ChessBoardModel.getCols();
+
+        AbstractPiece movingPiece = model.getPieceAt(from / cols, from % cols);
+        List<AbstractPiece> beforeMove = new ArrayList<>(model.getPieces());
+        if (!model.tryMove(from / cols, from % cols, to / cols, to % cols)) return;
+
+        clearSelection();
+        updateTurnLabel();
+        startMoveAnimation(movingPiece, from / cols, from % cols, to / cols, to % cols, beforeMove);
+
+        //think on the player's time about the reply the search expects (second move of its pv)
+        int[] pv = result.getPv();
+        if (pv.length >= 2 && pv[0] == result.getBestMove()) {
+            engine.ponder(model, pv[1]);
+        }
     }
 
+    //the player moved: a wrong guess cancels the ponder search now instead of when the engine's turn starts
+    //(only raises a flag, doesn't wait for the search thread)
+    private void notifyEngine(int fromRow, int fromCol, int toRow, int toCol) {
+        if (engine != null) {
+            engine.opponentMoved(ChessBoardModel.encodeMove(fromRow, fromCol, toRow, toCol));
+        }
+    }
+
+    private void stopEngine() {
+        if (engine != null) {
+            engine.shutdown();
+        }
+    }
+
+
+    private static OpeningBook openBook() {
+        if (!Files.exists(BOOK_FILE)) {
+            return null;
+        }
+        try {
+            return OpeningBook.open(BOOK_FILE);
+        } catch (IOException e) {
+            System.out.println("Opening book not loaded: " + e.getMessage());
+            return null;
+        }
+    }
+
+    //loaded once per run, checkEndgame and the engine both use the default tables
+    private static void openTablebases() {
+        if (Tablebase.getDefault() != null || !Files.isDirectory(TABLEBASE_DIR)) {
+            return;
+        }
+        try {
+            Tablebase.setDefault(Tablebase.open(TABLEBASE_DIR));
+        } catch (IOException e) {
+            System.out.println("Endgame tables not loaded: " + e.getMessage());
+        }
+    }
+
+    public static boolean isTimedTwoPlayerGames() {
+        return timedTwoPlayerGames;
+    }
+
+    public static void setTimedTwoPlayerGames(boolean timed) {//settings checkbox, from the next game on
+        timedTwoPlayerGames = timed;
+    }
+
+    private void startClockTimer() {
+        if (model.getClock() == null) return;//untimed game
+        clockTimer = new Timer(CLOCK_TICK_MS, e -> {
+            updateClockLabels();
+            boolean side = model.isRedTurn();
+            if (!isGameOver && !isPaused && model.getClock().isFlagged(side)) {
+                onFlagFall(side);
+            }
+        });
+        clockTimer.start();
+    }
+
+    private void stopClockTimer() {
+        if (clockTimer != null) {
+            clockTimer.stop();
+        }
+    }
+
+    private void updateClockLabels() {
+        GameClock clock = model.getClock();
+        redClockLabel.setText("Red " + formatClock(clock, true));
+        blackClockLabel.setText("Black " + formatClock(clock, false));
+        redClockLabel.setForeground(clockColor(clock, true));
+        blackClockLabel.setForeground(clockColor(clock, false));
+    }
+
+    private static String formatClock(GameClock clock, boolean isRed) {
+        String time = GameClock.format(clock.getRemaining(isRed));
+        if (clock.getByoyomi() > 0 && clock.getMainTime(isRed) == 0) {
+            time += " (" + clock.getPeriods(isRed) + "x" + clock.getByoyomi() / 1000 + "s)";//in byoyomi
+        }
+        return time;
+    }
+
+    //running side in gold, the waiting one dimmed, red when under 10 seconds
+    private Color clockColor(GameClock clock, boolean isRed) {
+        if (clock.isRedRunning() != isRed || isGameOver) {
+            return new Color(150, 130, 90);
+        }
+        return clock.getRemaining(isRed) < 10_000 ? new Color(200, 40, 30) : GOLD;
+    }
+
+    private void onFlagFall(boolean isRed) {
+        model.loseOnTime(isRed);
+        deleteSaveIfExists();
+        showGameOverOverlay(isRed ? "Time — Black Wins! (Red ran out of time)" : "Time — Red Wins! (Black ran out of time)");
+    }
 
     private void detectCapturedPieces(List<AbstractPiece> beforeMove) {
         boolean addedAny = false;
@@ -725,6 +988,8 @@ public class ChessBoardPanel extends JPanel {
                 message = "Draw — Threefold Repetition";
             } else if (model.isStalemate(model.isRedTurn())) {
                 message = "Draw — Stalemate";
+            } else if (model.isTheoreticalDraw()) {
+                message = "Draw — No Winning Chances";
             } else {
                 message = "Draw";
             }
@@ -739,12 +1004,10 @@ public class ChessBoardPanel extends JPanel {
 
     private void calculateValidMovesPseudoLegal(AbstractPiece piece) {
         validMovePoints.clear();
-        for (int r = 0; r < ChessBoardModel.getRows(); r++) {
-            for (int c = 0; c < ChessBoardModel.getCols(); c++) {
-                if (piece.canMoveTo(r, c, model)) {
-                    validMovePoints.add(new Point(c, r));
-                }
-            }
+        int count = MoveGenerator.generatePiece(model, piece, pieceMoveBuffer, 0);
+        for (int i = 0; i < count; i++) {
+            int to = ChessBoardModel.moveTo(pieceMoveBuffer[i]);
+            validMovePoints.add(new Point(to % ChessBoardModel.getCols(), to / ChessBoardModel.getCols()));
         }
     }
 
@@ -1046,6 +1309,12 @@ public class ChessBoardPanel extends JPanel {
 
         isPaused = true;
         isGameOver = true;
+        if (model.getClock() != null) {
+            model.getClock().pause();
+        }
+        if (engine != null) {
+            engine.stop();//no more pondering
+        }
 
         closePauseOverlayIfOpen();
 
@@ -8,7 +8,7 @@ import java.awt.event.ActionListener;
 
 public class MainMenuPanel extends JPanel {
     private static final int CARD_WIDTH = 380;//layout constants
-    private static final int CARD_HEIGHT = 460;
+    private static final int CARD_HEIGHT = 520;
 
     private static final int BTN_W_PRIMARY = 270;
     private static final int BTN_W_SECONDARY = 235;
@@ -19,7 +19,7 @@ public class MainMenuPanel extends JPanel {
     private static final int CARD_RADIUS = 18;
     private static final Color GOLD = new Color(210, 175, 80);
 
-    public MainMenuPanel(boolean isGuest, boolean hasSavedGame, ActionListener onStart, ActionListener onContinue, ActionListener onSettings, ActionListener onExit) {
+    public MainMenuPanel(boolean isGuest, boolean hasSavedGame, ActionListener onStart, ActionListener onStartVsComputer, ActionListener onContinue, ActionListener onSettings, ActionListener onExit) {
         setLayout(new GridBagLayout());
         setOpaque(true);
         setBackground(Color.BLACK);//black bg
@@ -49,6 +49,13 @@ public class MainMenuPanel extends JPanel {
         startBtn.setPreferredSize(new Dimension(BTN_W_PRIMARY, BTN_H_PRIMARY));
         card.add(startBtn, gbc);
 
+        gbc.gridy++;//vs computer
+        gbc.insets = new Insets(0, 0, 18, 0);
+
+        JButton computerBtn = new ShadowButton("VS COMPUTER", false);
+        computerBtn.setPreferredSize(new Dimension(BTN_W_SECONDARY, BTN_H_SECONDARY));
+        card.add(computerBtn, gbc);
+
         gbc.gridy++;//continue
         gbc.insets = new Insets(0, 0, 18, 0);
 
@@ -75,6 +82,10 @@ public class MainMenuPanel extends JPanel {
             AudioManager.playSFX("click");
             onStart.actionPerformed(e);
         });
+        computerBtn.addActionListener(e -> {
+            AudioManager.playSFX("click");
+            onStartVsComputer.actionPerformed(e);
+        });
         continueBtn.addActionListener(e -> {
             AudioManager.playSFX("click");
             onContinue.actionPerformed(e);
@@ -10,6 +10,7 @@ import java.awt.geom.RoundRectangle2D;
 
 public class SettingsPanel extends JPanel {//settings panel from the mainmenu button
     private JCheckBox musicCheckBox;
+    private JCheckBox clockCheckBox;
     private JSlider volumeSlider;
     private JButton backButton;
 
@@ -42,7 +43,7 @@ public class SettingsPanel extends JPanel {//settings panel from the mainmenu bu
         };
         card.setOpaque(false);
         card.setBorder(new EmptyBorder(44, 56, 44, 56));//spacing between elements inside the card
-        card.setPreferredSize(new Dimension(560, 520));//size fixed
+        card.setPreferredSize(new Dimension(560, 580));//size fixed
 
         GridBagConstraints c = new GridBagConstraints();
         c.gridx = 0;
@@ -89,6 +90,19 @@ public class SettingsPanel extends JPanel {//settings panel from the mainmenu bu
         volumeSlider.setUI(new GoldSliderUI(volumeSlider));//replace default UI with custom gold-themed UI
         card.add(volumeSlider, c);
 
+        c.gridy++;//clock for two player games (VS COMPUTER games are always timed)
+        clockCheckBox = new JCheckBox("Timed Two Player Games (10 min + 5 s)");
+        clockCheckBox.setOpaque(false);
+        clockCheckBox.setForeground(new Color(235, 235, 235));
+        clockCheckBox.setFont(new Font("Serif", Font.PLAIN, 16));
+        clockCheckBox.setSelected(ChessBoardPanel.isTimedTwoPlayerGames());
+        clockCheckBox.setIcon(new GoldCheckboxIcon(false));
+        clockCheckBox.setSelectedIcon(new GoldCheckboxIcon(true));
+        clockCheckBox.setFocusPainted(false);
+        clockCheckBox.setBorderPainted(false);
+        clockCheckBox.setContentAreaFilled(false);
+        card.add(clockCheckBox, c);
+
         c.gridy++;//back to main menu button
         c.insets = new Insets(28, 10, 10, 10);
 
@@ -102,6 +116,9 @@ public class SettingsPanel extends JPanel {//settings panel from the mainmenu bu
         musicCheckBox.addActionListener(e ->//music checkbox, toggles bgm
                 AudioManager.setMusicEnabled(musicCheckBox.isSelected())
         );
+        clockCheckBox.addActionListener(e ->//clock on / off for the next two player game
+                ChessBoardPanel.setTimedTwoPlayerGames(clockCheckBox.isSelected())
+        );
         volumeSlider.addChangeListener(e ->//change volume with slider
                 AudioManager.setMusicVolume(volumeSlider.getValue() / 100f)
         );
@@ -72,6 +72,10 @@ public class XiangqiApplication {
 
 
     private static void switchToGame(JFrame frame, boolean isGuest, boolean loadSave) {//change to main game screen
+        switchToGame(frame, isGuest, loadSave, false);
+    }
+
+    private static void switchToGame(JFrame frame, boolean isGuest, boolean loadSave, boolean vsComputer) {//vsComputer: engine plays black
         ChessBoardModel model = new ChessBoardModel();
         File saveFile = null;
 
@@ -89,7 +93,8 @@ public class XiangqiApplication {
                 model,
                 isGuest,
                 currentUsername,
-                () -> switchToGame(frame, isGuest, false),//restart button
+                vsComputer,
+                () -> switchToGame(frame, isGuest, false, vsComputer),//restart button
                 () -> switchToMainMenu(
                         frame,
                         isGuest,
@@ -111,6 +116,7 @@ public class XiangqiApplication {
                 isGuest,
                 hasSave,
                 e -> switchToGame(frame, isGuest, false),//new Game
+                e -> switchToGame(frame, isGuest, false, true),//new Game against the computer
                 e -> switchToGame(frame, isGuest, true),//continue Game
                 e -> switchToSettings(frame),//settings
                 e -> System.exit(0)//exit